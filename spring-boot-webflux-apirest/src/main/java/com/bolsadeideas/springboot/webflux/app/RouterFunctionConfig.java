@@ -1,7 +1,10 @@
 package com.bolsadeideas.springboot.webflux.app;
 
+import java.util.List;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
@@ -14,15 +17,39 @@ import static org.springframework.web.reactive.function.server.RequestPredicates
 @Configuration
 public class RouterFunctionConfig {
 
+	private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON,
+			MediaType.TEXT_EVENT_STREAM);
+
 	@Bean
 	public RouterFunction<ServerResponse> routes(ProductHandler handler) {
 		return route(GET(RouteEnum.API_V2_BASE_PRODUCTS.getRoute())
+				.or(GET(RouteEnum.API_V3_BASE_PRODUCTS.getRoute()))
+				.and(acceptStreaming()), handler::listarStream)
+				.andRoute(GET(RouteEnum.API_V2_BASE_PRODUCTS.getRoute())
 				.or(GET(RouteEnum.API_V3_BASE_PRODUCTS.getRoute())), handler::listar)
+				.andRoute(GET(RouteEnum.API_V3_PRODUCT_CHANGES.getRoute()), handler::cambios)
 				.andRoute(GET(RouteEnum.API_V2_PRODUCTS.getRoute() + "{id}"), handler::ver)
+				.andRoute(GET(RouteEnum.API_V2_PRODUCTS.getRoute() + "uploads/img/{photo}"), handler::verFoto)
 				.andRoute(POST(RouteEnum.API_V2_BASE_PRODUCTS.getRoute()), handler::crear)
+				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "bulk/precio"), handler::editarPrecioLote)
+				.andRoute(DELETE(RouteEnum.API_V2_PRODUCTS.getRoute() + "bulk"), handler::eliminarLote)
 				.andRoute(PUT(RouteEnum.API_V2_PRODUCTS.getRoute() + "{id}"), handler::editar)
+				.andRoute(PATCH(RouteEnum.API_V2_PRODUCTS.getRoute() + "{id}"), handler::editarParcial)
 				.andRoute(DELETE(RouteEnum.API_V2_PRODUCTS.getRoute() + "{id}"), handler::eliminar)
 				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/{id}"), handler::upload)
-				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "crear"), handler::crearConFoto);
+				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/{id}/sesion"), handler::crearSubida)
+				.andRoute(GET(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/sesion/{sesion}")
+				.or(HEAD(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/sesion/{sesion}")), handler::verSubida)
+				.andRoute(PATCH(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/sesion/{sesion}"), handler::subirFragmento)
+				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/sesion/{sesion}/completar"),
+						handler::completarSubida)
+				.andRoute(DELETE(RouteEnum.API_V2_PRODUCTS.getRoute() + "upload/sesion/{sesion}"), handler::cancelarSubida)
+				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "crear"), handler::crearConFoto)
+				.andRoute(POST(RouteEnum.API_V2_PRODUCTS.getRoute() + "bulk"), handler::crearLote);
+	}
+
+	private static RequestPredicate acceptStreaming() {
+		return request -> request.headers().accept().stream()
+				.anyMatch(mediaType -> STREAMING_MEDIA_TYPES.stream().anyMatch(mediaType::equalsTypeAndSubtype));
 	}
 }
@@ -9,7 +9,9 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
@@ -33,17 +35,30 @@ public class SpringBootWebfluxApirestApplication implements CommandLineRunner {
 
 	@Override
 	public void run(String... args) throws Exception {
-		restoreDB();
-		populateDB();
+		restoreDB()
+				.thenMany(ensureIndexes())
+				.thenMany(populateDB())
+				.subscribe(this::printProductCreated,
+						error -> logger.error("Error al inicializar la base de datos", error));
 	}
 
-	protected void populateDB() {
+	protected Flux<String> ensureIndexes() {
+		IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+		return Flux.just(Product.class, Category.class)
+				.concatMap(type -> Flux.fromIterable(resolver.resolveIndexFor(type))
+						// Skip indexes cascaded from embedded documents such as Product.category
+						.filter(index -> !index.getIndexOptions().getString("name").contains("."))
+						.concatMap(index -> mongoTemplate.indexOps(type).ensureIndex(index)))
+				.doOnNext(this::printIndexEnsured);
+	}
+
+	protected Flux<Product> populateDB() {
 		Category electronic = new Category("Electrónico");
 		Category sport = new Category("Deporte");
 		Category computing = new Category("Computación");
 		Category furniture = new Category("Muebles");
 
-		Flux.just(electronic, sport, computing, furniture).flatMap(service::saveCategory)
+		return Flux.just(electronic, sport, computing, furniture).flatMap(service::saveCategory)
 				.doOnNext(this::printCategoryCreated)
 				.thenMany(Flux.just(new Product("TV Panasonic Pantalla LCD", 456.89, electronic),
 							new Product("Sony Camara HD Digital", 177.89, electronic),
@@ -57,19 +72,22 @@ public class SpringBootWebfluxApirestApplication implements CommandLineRunner {
 						).flatMap(product -> {
 							product.setCreateAt(new Date());
 							return service.save(product);
-						}))
-				.subscribe(this::printProductCreated);
+						}));
 	}
 
-	protected void restoreDB() {
-		mongoTemplate.dropCollection("productos").subscribe();
-		mongoTemplate.dropCollection("categorias").subscribe();
+	protected Mono<Void> restoreDB() {
+		return mongoTemplate.dropCollection("productos")
+				.then(mongoTemplate.dropCollection("categorias"));
 	}
 
 	private void printCategoryCreated(Category category) {
 		logger.info("Categoria creada: " + category.getName() + ", Id: " + category.getId());
 	}
 
+	private void printIndexEnsured(String index) {
+		logger.info("Indice asegurado: " + index);
+	}
+
 	private void printProductCreated(Product product) {
 		logger.info("Insert: " + product.getId() + " " + product.getName());
 	}
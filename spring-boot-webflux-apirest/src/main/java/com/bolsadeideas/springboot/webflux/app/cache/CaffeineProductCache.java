@@ -0,0 +1,51 @@
+package com.bolsadeideas.springboot.webflux.app.cache;
+
+import java.time.Duration;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+@Component
+@ConditionalOnProperty(name = "config.cache.products.enabled", havingValue = "true", matchIfMissing = true)
+public class CaffeineProductCache implements ProductCache {
+
+	private final AsyncCache<String, Product> cache;
+
+	public CaffeineProductCache(@Value("${config.cache.products.maximum-size}") long maximumSize,
+			@Value("${config.cache.products.ttl}") Duration ttl, MeterRegistry registry) {
+		this.cache = CaffeineCacheMetrics.monitor(registry, Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.<String, Product>buildAsync(), "productos");
+	}
+
+	@Override
+	public Mono<Product> get(String id, Function<String, Mono<Product>> loader) {
+		// Each subscriber gets its own copy through a dependent future, so callers can't mutate the cached product
+		// and, once fromFuture propagates cancellation (Reactor 3.5), a cancelled subscriber can't cancel the shared load
+		return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture())
+				.thenApply(product -> product == null ? null : new Product(product)));
+	}
+
+	@Override
+	public Mono<Void> evict(String id) {
+		return Mono.fromRunnable(() -> {
+			if (id != null)
+				cache.synchronous().invalidate(id);
+		});
+	}
+
+	@Override
+	public Mono<Void> evictAll() {
+		return Mono.fromRunnable(() -> cache.synchronous().invalidateAll());
+	}
+}
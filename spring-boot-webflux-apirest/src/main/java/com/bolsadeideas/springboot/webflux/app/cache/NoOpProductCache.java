@@ -0,0 +1,28 @@
+package com.bolsadeideas.springboot.webflux.app.cache;
+
+import java.util.function.Function;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+@Component
+@ConditionalOnProperty(name = "config.cache.products.enabled", havingValue = "false")
+public class NoOpProductCache implements ProductCache {
+
+	@Override
+	public Mono<Product> get(String id, Function<String, Mono<Product>> loader) {
+		return loader.apply(id);
+	}
+
+	@Override
+	public Mono<Void> evict(String id) {
+		return Mono.empty();
+	}
+
+	@Override
+	public Mono<Void> evictAll() {
+		return Mono.empty();
+	}
+}
@@ -0,0 +1,15 @@
+package com.bolsadeideas.springboot.webflux.app.cache;
+
+import java.util.function.Function;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+public interface ProductCache {
+
+	public Mono<Product> get(String id, Function<String, Mono<Product>> loader);
+
+	public Mono<Void> evict(String id);
+
+	public Mono<Void> evictAll();
+}
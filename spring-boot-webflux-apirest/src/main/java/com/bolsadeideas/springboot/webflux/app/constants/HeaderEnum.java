@@ -0,0 +1,18 @@
+package com.bolsadeideas.springboot.webflux.app.constants;
+
+public enum HeaderEnum {
+
+    NEXT_CURSOR("X-Next-Cursor"),
+    UPLOAD_OFFSET("Upload-Offset"),
+    UPLOAD_LENGTH("Upload-Length");
+
+    private final String header;
+
+    HeaderEnum(String header) {
+        this.header = header;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+}
@@ -0,0 +1,33 @@
+package com.bolsadeideas.springboot.webflux.app.constants;
+
+import java.util.Arrays;
+
+public enum PhotoSizeEnum {
+
+    THUMBNAIL("thumbnail", 160),
+    MEDIUM("medium", 640);
+
+    private final String size;
+
+    private final int maxDimension;
+
+    PhotoSizeEnum(String size, int maxDimension) {
+        this.size = size;
+        this.maxDimension = maxDimension;
+    }
+
+    public String getSize() {
+        return size;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public static PhotoSizeEnum fromSize(String size) {
+        return Arrays.stream(values())
+                .filter(value -> value.size.equals(size))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown size: " + size));
+    }
+}
@@ -0,0 +1,64 @@
+package com.bolsadeideas.springboot.webflux.app.constants;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+public enum ProductFieldEnum {
+
+    ID("id", Product::getId),
+    NAME("name", Product::getName),
+    PRICE("price", Product::getPrice),
+    CREATE_AT("createAt", Product::getCreateAt),
+    CATEGORY("category", Product::getCategory),
+    PHOTO("photo", Product::getPhoto),
+    VERSION("version", Product::getVersion);
+
+    private final String field;
+
+    private final Function<Product, Object> getter;
+
+    ProductFieldEnum(String field, Function<Product, Object> getter) {
+        this.field = field;
+        this.getter = getter;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Object getValue(Product product) {
+        return getter.apply(product);
+    }
+
+    public static ProductFieldEnum fromField(String field) {
+        return Arrays.stream(values())
+                .filter(value -> value.field.equals(field))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown field: " + field));
+    }
+
+    public static Set<ProductFieldEnum> fromFields(String fields) {
+        Set<ProductFieldEnum> result = EnumSet.noneOf(ProductFieldEnum.class);
+        if (fields == null)
+            return result;
+
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .map(ProductFieldEnum::fromField)
+                .forEach(result::add);
+        return result;
+    }
+
+    public static Map<String, Object> toMap(Product product, Set<ProductFieldEnum> fields) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        fields.forEach(field -> map.put(field.getField(), field.getValue(product)));
+        return map;
+    }
+}
@@ -5,7 +5,8 @@ public enum RouteEnum {
     API_PRODUCTS("/api/productos/"),
     API_V2_BASE_PRODUCTS("/api/v2/productos"),
     API_V2_PRODUCTS("/api/v2/productos/"),
-    API_V3_BASE_PRODUCTS("/api/v3/productos");
+    API_V3_BASE_PRODUCTS("/api/v3/productos"),
+    API_V3_PRODUCT_CHANGES("/api/v3/productos/changes");
 
     private final String route;
 
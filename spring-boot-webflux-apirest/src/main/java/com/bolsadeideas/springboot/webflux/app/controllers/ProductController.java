@@ -1,9 +1,9 @@
 package com.bolsadeideas.springboot.webflux.app.controllers;
 
-import java.io.File;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -11,26 +11,42 @@ import java.util.UUID;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import com.bolsadeideas.springboot.webflux.app.constants.HeaderEnum;
 import com.bolsadeideas.springboot.webflux.app.constants.RouteEnum;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
 import com.bolsadeideas.springboot.webflux.app.models.services.ProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.bolsadeideas.springboot.webflux.app.storage.StoredPhoto;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSession;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSessions;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadValidator;
+import com.bolsadeideas.springboot.webflux.app.utils.ETagUtils;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -39,6 +55,15 @@ public class ProductController {
 	@Autowired
 	private ProductService productService;
 
+	@Autowired
+	private PhotoStorage photoStorage;
+
+	@Autowired
+	private UploadValidator uploadValidator;
+
+	@Autowired
+	private UploadSessions uploadSessions;
+
 	@Value("${config.uploads.path}")
 	private String path;
 
@@ -48,30 +73,97 @@ public class ProductController {
 			product.setCreateAt(new Date());
 
 		product.setPhotoWithFormattedName(UUID.randomUUID().toString(), file.filename());
-		return file.transferTo(new File(path + product.getPhoto()))
-				.then(productService.save(product))
+		return photoStorage.save(product.getPhoto(), uploadValidator.validate(file.content()))
+				.flatMap(photo -> {
+					product.setPhoto(photo);
+					return productService.save(product)
+							.onErrorResume(exception -> photoStorage.delete(photo).then(Mono.error(exception)));
+				})
 				.map(productPersisted -> ResponseEntity
 						.created(URI.create(RouteEnum.API_PRODUCTS.getRoute().concat(productPersisted.getId())))
 						.contentType(MediaType.APPLICATION_JSON)
-						.body(productPersisted));
+						.body(productPersisted))
+				.onErrorMap(Exceptions::isMultiple, exception -> Exceptions.unwrapMultiple(exception).get(0))
+				.onErrorResume(ResponseStatusException.class,
+						exception -> Mono.just(ResponseEntity.status(exception.getStatus()).build()));
 	}
 
 	@PostMapping("/upload/{id}")
 	public Mono<ResponseEntity<Product>> upload(@PathVariable String id, @RequestPart FilePart file) {
 		return productService.findById(id)
-				.flatMap(product -> {
-					product.setPhotoWithFormattedName(UUID.randomUUID().toString(), file.filename());
-					return file.transferTo(new File(path + product.getPhoto()))
-							.then(productService.save(product));
-				}).map(product -> ResponseEntity.ok(product))
+				.flatMap(product -> replacePhoto(product, file.filename(), file.content()))
+				.map(product -> ResponseEntity.ok(product))
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorMap(Exceptions::isMultiple, exception -> Exceptions.unwrapMultiple(exception).get(0))
+				.onErrorResume(ResponseStatusException.class,
+						exception -> Mono.just(ResponseEntity.status(exception.getStatus()).build()));
+	}
+
+	@PostMapping("/upload/{id}/session")
+	public Mono<ResponseEntity<Void>> createUploadSession(@PathVariable String id, @RequestParam String filename,
+			@RequestParam long length) {
+		return productService.findById(id)
+				.flatMap(product -> uploadSessions.create(product.getId(), filename, length))
+				.map(session -> toUploadResponse(ResponseEntity.created(URI.create(RouteEnum.API_PRODUCTS.getRoute()
+						.concat("upload/session/").concat(session.getId()))), session))
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(ResponseStatusException.class,
+						exception -> Mono.just(ResponseEntity.status(exception.getStatus()).build()));
+	}
+
+	@GetMapping("/upload/session/{sessionId}")
+	public Mono<ResponseEntity<Void>> viewUploadSession(@PathVariable String sessionId) {
+		return uploadSessions.find(sessionId)
+				.map(session -> toUploadResponse(ResponseEntity.ok(), session))
 				.defaultIfEmpty(ResponseEntity.notFound().build());
 	}
 
+	@PatchMapping(path = "/upload/session/{sessionId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public Mono<ResponseEntity<Void>> appendUploadSession(@PathVariable String sessionId, @RequestParam long offset,
+			@RequestBody Flux<DataBuffer> content) {
+		return uploadSessions.append(sessionId, offset, content)
+				.map(session -> toUploadResponse(ResponseEntity.status(HttpStatus.NO_CONTENT), session))
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(ResponseStatusException.class,
+						exception -> Mono.just(ResponseEntity.status(exception.getStatus()).build()));
+	}
+
+	@PostMapping("/upload/session/{sessionId}/complete")
+	public Mono<ResponseEntity<Product>> completeUploadSession(@PathVariable String sessionId) {
+		return uploadSessions.complete(sessionId, session -> productService.findById(session.getProductId())
+						.flatMap(product -> replacePhoto(product, session.getFilename(),
+								StoredPhoto.read(session.getFile()))))
+				.map(product -> ResponseEntity.ok(product))
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(ResponseStatusException.class,
+						exception -> Mono.just(ResponseEntity.status(exception.getStatus()).build()));
+	}
+
+	@DeleteMapping("/upload/session/{sessionId}")
+	public Mono<ResponseEntity<Void>> deleteUploadSession(@PathVariable String sessionId) {
+		return uploadSessions.delete(sessionId)
+				.map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+	}
+
 	@GetMapping
-	public Mono<ResponseEntity<Flux<Product>>> list() {
-		return Mono.just(ResponseEntity.ok()
-				.contentType(MediaType.APPLICATION_JSON)
-				.body(productService.findAll()));
+	public Mono<ResponseEntity<Flux<Product>>> list(@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit) {
+		if (after == null && limit == null)
+			return Mono.just(ResponseEntity.ok()
+					.contentType(MediaType.APPLICATION_JSON)
+					.body(productService.findAll()));
+
+		return productService.findPage(after, limit)
+				.map(page -> {
+					ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+							.contentType(MediaType.APPLICATION_JSON);
+					if (page.hasNext())
+						response.header(HeaderEnum.NEXT_CURSOR.getHeader(), page.getNext());
+
+					return response.body(Flux.fromIterable(page.getContent()));
+				})
+				.onErrorResume(IllegalArgumentException.class,
+						exception -> Mono.just(ResponseEntity.badRequest().build()));
 	}
 
 	@GetMapping("/{id}")
@@ -119,27 +211,67 @@ public class ProductController {
 	}
 
 	@PutMapping("/{id}")
-	public Mono<ResponseEntity<Product>> edit(@RequestBody Product product, @PathVariable String id) {
-		return productService.findById(id)
-				.flatMap(productPersisted -> {
-					productPersisted.setName(product.getName());
-					productPersisted.setPrice(product.getPrice());
-					productPersisted.setCategory(product.getCategory());
-					return productService.save(productPersisted);
-				}).map(productPersisted -> ResponseEntity
+	public Mono<ResponseEntity<Product>> edit(@Valid @RequestBody Product product, @PathVariable String id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch == null)
+			return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build());
+
+		return Mono.defer(() -> productService.update(id, product, ETagUtils.parseVersion(ifMatch, id)))
+				.map(productPersisted -> ResponseEntity
 						.created(URI.create(RouteEnum.API_PRODUCTS.getRoute().concat(productPersisted.getId())))
 						.contentType(MediaType.APPLICATION_JSON)
+						.eTag(ETagUtils.of(productPersisted, Collections.emptySet()))
 						.body(productPersisted))
-				.defaultIfEmpty(ResponseEntity.notFound().build());
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(IllegalArgumentException.class,
+						exception -> Mono.just(ResponseEntity.badRequest().build()))
+				.onErrorResume(OptimisticLockingFailureException.class,
+						exception -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()));
+	}
+
+	@PatchMapping("/{id}")
+	public Mono<ResponseEntity<Product>> patch(@RequestBody Product product, @PathVariable String id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (ifMatch == null)
+			return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build());
+
+		return Mono.defer(() -> productService.patch(id, product, ETagUtils.parseVersion(ifMatch, id)))
+				.map(productPersisted -> ResponseEntity.ok()
+						.contentType(MediaType.APPLICATION_JSON)
+						.eTag(ETagUtils.of(productPersisted, Collections.emptySet()))
+						.body(productPersisted))
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(IllegalArgumentException.class,
+						exception -> Mono.just(ResponseEntity.badRequest().build()))
+				.onErrorResume(OptimisticLockingFailureException.class,
+						exception -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()));
 	}
 
 	@DeleteMapping("/{id}")
 	public Mono<ResponseEntity<Void>> delete(@PathVariable String id) {
-		return productService.findById(id)
-				.flatMap(product -> {
-					return productService.delete(product)
-							.then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT)));
-				}).defaultIfEmpty(new ResponseEntity<Void>(HttpStatus.NOT_FOUND));
+		return productService.deleteById(id)
+				.map(product -> new ResponseEntity<Void>(HttpStatus.NO_CONTENT))
+				.defaultIfEmpty(new ResponseEntity<Void>(HttpStatus.NOT_FOUND));
+	}
+
+	private Mono<Product> replacePhoto(Product product, String filename, Flux<DataBuffer> content) {
+		String previousPhoto = product.getPhoto();
+		product.setPhotoWithFormattedName(UUID.randomUUID().toString(), filename);
+		return photoStorage.save(product.getPhoto(), uploadValidator.validate(content))
+				.flatMap(photo -> {
+					product.setPhoto(photo);
+					return productService.save(product)
+							.onErrorResume(exception -> photoStorage.delete(photo).then(Mono.error(exception)));
+				})
+				.flatMap(productPersisted -> previousPhoto == null ? Mono.just(productPersisted)
+						: photoStorage.delete(previousPhoto).thenReturn(productPersisted));
+	}
+
+	private ResponseEntity<Void> toUploadResponse(ResponseEntity.BodyBuilder response, UploadSession session) {
+		return response.header(HeaderEnum.UPLOAD_OFFSET.getHeader(), String.valueOf(session.getOffset()))
+				.header(HeaderEnum.UPLOAD_LENGTH.getHeader(), String.valueOf(session.getLength()))
+				.cacheControl(CacheControl.noStore())
+				.build();
 	}
 
 	protected Path getPath() {
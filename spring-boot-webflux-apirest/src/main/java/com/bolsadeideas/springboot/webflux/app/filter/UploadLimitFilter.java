@@ -0,0 +1,29 @@
+package com.bolsadeideas.springboot.webflux.app.filter;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.storage.UploadValidator;
+
+@Component
+public class UploadLimitFilter implements WebFilter {
+
+	@Autowired
+	private UploadValidator uploadValidator;
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		MediaType contentType = exchange.getRequest().getHeaders().getContentType();
+		if (contentType == null || !MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType))
+			return chain.filter(exchange);
+
+		return chain.filter(exchange.mutate()
+				.request(uploadValidator.limit(exchange.getRequest()))
+				.build());
+	}
+}
@@ -1,94 +1,306 @@
 package com.bolsadeideas.springboot.webflux.app.handler;
 
-import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.DefaultPartHttpMessageReader;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import com.bolsadeideas.springboot.webflux.app.constants.HeaderEnum;
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
 import com.bolsadeideas.springboot.webflux.app.constants.RouteEnum;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.BulkItemResult;
+import com.bolsadeideas.springboot.webflux.app.models.dto.BulkPriceUpdate;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductChange;
+import com.bolsadeideas.springboot.webflux.app.models.services.ProductChangeService;
 import com.bolsadeideas.springboot.webflux.app.models.services.ProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.bolsadeideas.springboot.webflux.app.storage.StoredPhoto;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSession;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSessions;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadValidator;
+import com.bolsadeideas.springboot.webflux.app.utils.ETagUtils;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 
 @Component
 public class ProductHandler {
 
+	private static final ResolvableType PART_TYPE = ResolvableType.forClass(Part.class);
+
+	private static final String PHOTO_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS)
+			.cachePublic()
+			.getHeaderValue() + ", immutable";
+
+	private static final String FALLBACK_PHOTO_CACHE_CONTROL = CacheControl.noCache()
+			.cachePublic()
+			.getHeaderValue();
+
 	@Autowired
 	private ProductService service;
 
-	@Value("${config.uploads.path}")
-	private String path;
+	@Autowired
+	private ProductChangeService changeService;
 
 	@Autowired
 	private Validator validator;
 
+	@Value("${config.bulk.batch-size}")
+	private int bulkBatchSize;
+
+	@Autowired
+	private PhotoStorage photoStorage;
+
+	@Autowired
+	private UploadValidator uploadValidator;
+
+	@Autowired
+	private UploadSessions uploadSessions;
+
+	private final DefaultPartHttpMessageReader partReader = new DefaultPartHttpMessageReader();
+
+	public ProductHandler() {
+		partReader.setStreaming(true);
+	}
+
 	public Mono<ServerResponse> crearConFoto(ServerRequest request) {
-		Mono<Product> productMono = request.multipartData().map(multipart -> {
-			FormFieldPart name = (FormFieldPart) multipart.toSingleValueMap().get("nombre");
-			FormFieldPart price = (FormFieldPart) multipart.toSingleValueMap().get("precio");
-			FormFieldPart categoryId = (FormFieldPart) multipart.toSingleValueMap().get("categoria.id");
-			FormFieldPart categoryName = (FormFieldPart) multipart.toSingleValueMap().get("categoria.nombre");
-			Category category = new Category(categoryName.value());
-			category.setId(categoryId.value());
-			return new Product(name.value(), Double.parseDouble(price.value()), category);
-		});
+		return Mono.defer(() -> {
+			Product product = new Product();
+			product.setCategory(new Category());
+			AtomicBoolean received = new AtomicBoolean();
+			return partReader.read(PART_TYPE, request.exchange().getRequest(), Collections.emptyMap())
+					.concatMap(part -> readPart(product, part, received))
+					.then(Mono.defer(() -> {
+						List<String> errors = validate(product);
+						if (product.getPhoto() == null)
+							errors.add("El campo file es obligatorio");
+						if (!errors.isEmpty())
+							return discardPhoto(product).then(ServerResponse.badRequest().bodyValue(errors));
 
-		return request.multipartData()
-				.map(multipart -> multipart.toSingleValueMap().get("file"))
-				.cast(FilePart.class)
-				.flatMap(file -> productMono.flatMap(product -> {
-					product.setPhotoWithFormattedName(UUID.randomUUID().toString(), file.filename());
-					product.setCreateAt(new Date());
-					return file.transferTo(new File(path + product.getPhoto()))
-							.then(service.save(product));
-				})).flatMap(product -> ServerResponse
-						.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute().concat(product.getId())))
-						.contentType(MediaType.APPLICATION_JSON)
-						.bodyValue(product));
+						product.setCreateAt(new Date());
+						return service.save(product).flatMap(productPersisted -> ServerResponse
+								.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute().concat(productPersisted.getId())))
+								.contentType(MediaType.APPLICATION_JSON)
+								.bodyValue(productPersisted));
+					}))
+					.onErrorResume(exception -> discardPhoto(product).then(Mono.error(exception)));
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()))
+		.onErrorMap(Exceptions::isMultiple, exception -> Exceptions.unwrapMultiple(exception).get(0))
+		.onErrorResume(ResponseStatusException.class, exception -> ServerResponse.status(exception.getStatus())
+				.bodyValue(exception.getReason()));
 	}
 
 	public Mono<ServerResponse> upload(ServerRequest request) {
 		String id = request.pathVariable("id");
-		return request.multipartData()
-				.map(multipart -> multipart.toSingleValueMap().get("file"))
-				.cast(FilePart.class)
-				.flatMap(file -> service.findById(id).flatMap(product -> {
-					product.setPhotoWithFormattedName(UUID.randomUUID().toString(), file.filename());
-					return file.transferTo(new File(path + product.getPhoto()))
-							.then(service.save(product));
-				}))
-				.flatMap(product -> ServerResponse
-						.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute().concat(product.getId())))
+		return service.findById(id)
+				.flatMap(product -> {
+					String previousPhoto = product.getPhoto();
+					AtomicBoolean received = new AtomicBoolean();
+					return partReader.read(PART_TYPE, request.exchange().getRequest(), Collections.emptyMap())
+							.concatMap(part -> readPhoto(product, part, received))
+							.then(Mono.defer(() -> received.get() ? service.save(product) : Mono.<Product>empty()))
+							.onErrorResume(exception -> (Objects.equals(product.getPhoto(), previousPhoto) ? Mono.<Void>empty()
+									: discardPhoto(product)).then(Mono.error(exception)))
+							.flatMap(productPersisted -> discardPhoto(previousPhoto).thenReturn(productPersisted))
+							.flatMap(productPersisted -> ServerResponse
+									.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute().concat(productPersisted.getId())))
+									.contentType(MediaType.APPLICATION_JSON)
+									.bodyValue(productPersisted))
+							.switchIfEmpty(Mono.defer(() -> ServerResponse.badRequest()
+									.bodyValue(Arrays.asList("El campo file es obligatorio"))));
+				})
+				.switchIfEmpty(ServerResponse.notFound().build())
+				.onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+						.bodyValue(exception.getMessage()))
+				.onErrorMap(Exceptions::isMultiple, exception -> Exceptions.unwrapMultiple(exception).get(0))
+				.onErrorResume(ResponseStatusException.class, exception -> ServerResponse.status(exception.getStatus())
+						.bodyValue(exception.getReason()));
+	}
+
+	public Mono<ServerResponse> crearSubida(ServerRequest request) {
+		String id = request.pathVariable("id");
+		Optional<String> filename = request.queryParam("nombre");
+		Optional<String> length = request.queryParam("tamano");
+		if (filename.isEmpty() || length.isEmpty())
+			return ServerResponse.badRequest().bodyValue(Arrays.asList("Los parametros nombre y tamano son obligatorios"));
+
+		return Mono.defer(() -> {
+			long size = Long.parseLong(length.get());
+			return service.findById(id)
+					.flatMap(product -> uploadSessions.create(product.getId(), filename.get(), size))
+					.flatMap(session -> toUploadResponse(ServerResponse.created(URI.create(RouteEnum.API_V2_PRODUCTS
+							.getRoute().concat("upload/sesion/").concat(session.getId()))), session))
+					.switchIfEmpty(ServerResponse.notFound().build());
+		}).onErrorResume(NumberFormatException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(Arrays.asList("El parametro tamano debe ser numerico")))
+		.onErrorResume(ResponseStatusException.class, exception -> ServerResponse.status(exception.getStatus())
+				.bodyValue(exception.getReason()));
+	}
+
+	public Mono<ServerResponse> verSubida(ServerRequest request) {
+		return uploadSessions.find(request.pathVariable("sesion"))
+				.flatMap(session -> toUploadResponse(ServerResponse.ok(), session))
+				.switchIfEmpty(ServerResponse.notFound().build());
+	}
+
+	public Mono<ServerResponse> subirFragmento(ServerRequest request) {
+		Optional<String> offset = request.queryParam("offset");
+		if (offset.isEmpty())
+			return ServerResponse.badRequest().bodyValue(Arrays.asList("El parametro offset es obligatorio"));
+
+		return Mono.defer(() -> uploadSessions.append(request.pathVariable("sesion"), Long.parseLong(offset.get()),
+						request.bodyToFlux(DataBuffer.class)))
+				.flatMap(session -> toUploadResponse(ServerResponse.noContent(), session))
+				.switchIfEmpty(ServerResponse.notFound().build())
+				.onErrorResume(NumberFormatException.class, exception -> ServerResponse.badRequest()
+						.bodyValue(Arrays.asList("El parametro offset debe ser numerico")))
+				.onErrorResume(ResponseStatusException.class, exception -> ServerResponse.status(exception.getStatus())
+						.bodyValue(exception.getReason()));
+	}
+
+	public Mono<ServerResponse> completarSubida(ServerRequest request) {
+		return uploadSessions.complete(request.pathVariable("sesion"), session -> service.findById(session.getProductId())
+						.flatMap(product -> replacePhoto(product, session.getFilename(), StoredPhoto.read(session.getFile()))))
+				.flatMap(product -> ServerResponse.ok()
 						.contentType(MediaType.APPLICATION_JSON)
 						.bodyValue(product))
-				.switchIfEmpty(ServerResponse.notFound().build());
+				.switchIfEmpty(ServerResponse.notFound().build())
+				.onErrorResume(ResponseStatusException.class, exception -> ServerResponse.status(exception.getStatus())
+						.bodyValue(exception.getReason()));
+	}
+
+	public Mono<ServerResponse> cancelarSubida(ServerRequest request) {
+		return uploadSessions.delete(request.pathVariable("sesion"))
+				.flatMap(deleted -> deleted ? ServerResponse.noContent().build() : ServerResponse.notFound().build());
 	}
 
 	public Mono<ServerResponse> listar(ServerRequest request) {
+		Optional<String> after = request.queryParam("after");
+		Optional<String> limit = request.queryParam("limit");
+		return Mono.defer(() -> {
+			Set<ProductFieldEnum> fields = ProductFieldEnum.fromFields(request.queryParam("fields").orElse(null));
+			return service.findCatalogVersion().flatMap(version -> {
+				String eTag = ETagUtils.of(version);
+				if (ETagUtils.matches(request.headers().header(HttpHeaders.IF_NONE_MATCH), eTag))
+					return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+
+				if (after.isEmpty() && limit.isEmpty())
+					return ServerResponse.ok()
+							.contentType(MediaType.APPLICATION_JSON)
+							.eTag(eTag)
+							.body(service.findAll(fields).map(product -> toBody(product, fields)), Object.class);
+
+				return service.findPage(after.orElse(null), limit.map(Integer::valueOf).orElse(null), fields)
+						.flatMap(page -> ServerResponse.ok()
+								.contentType(MediaType.APPLICATION_JSON)
+								.eTag(eTag)
+								.headers(headers -> {
+									if (page.hasNext())
+										headers.set(HeaderEnum.NEXT_CURSOR.getHeader(), page.getNext());
+								})
+								.body(Flux.fromIterable(page.getContent()).map(product -> toBody(product, fields)),
+										Object.class));
+			});
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()));
+	}
+
+	public Mono<ServerResponse> listarStream(ServerRequest request) {
+		MediaType mediaType = request.headers().accept().stream()
+				.filter(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)
+				.findFirst()
+				.orElse(MediaType.APPLICATION_NDJSON);
 		return ServerResponse.ok()
-				.contentType(MediaType.APPLICATION_JSON)
-				.body(service.findAll(), Product.class);
+				.contentType(mediaType)
+				.body(service.findAllStream(), Product.class);
+	}
+
+	public Mono<ServerResponse> cambios(ServerRequest request) {
+		String lastEventId = request.headers().firstHeader("Last-Event-ID");
+		Flux<ServerSentEvent<ProductChange>> events = changeService.findChanges(lastEventId)
+				.map(change -> ServerSentEvent.builder(change)
+						.id(change.getResumeToken())
+						.event(change.getOperation())
+						.build());
+		return ServerResponse.ok()
+				.contentType(MediaType.TEXT_EVENT_STREAM)
+				.body(events, new ParameterizedTypeReference<ServerSentEvent<ProductChange>>() {});
 	}
 
 	public Mono<ServerResponse> ver(ServerRequest request) {
 		String id = request.pathVariable("id");
-		return service.findById(id).flatMap(producto -> ServerResponse.ok()
-				.contentType(MediaType.APPLICATION_JSON)
-				.bodyValue(producto)
-				.switchIfEmpty(ServerResponse.notFound().build()));
+		return Mono.defer(() -> {
+			Set<ProductFieldEnum> fields = ProductFieldEnum.fromFields(request.queryParam("fields").orElse(null));
+			return service.findById(id, fields).flatMap(producto -> {
+				String eTag = ETagUtils.of(producto, fields);
+				if (ETagUtils.matches(request.headers().header(HttpHeaders.IF_NONE_MATCH), eTag))
+					return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+
+				return ServerResponse.ok()
+						.contentType(MediaType.APPLICATION_JSON)
+						.eTag(eTag)
+						.bodyValue(toBody(producto, fields));
+			}).switchIfEmpty(ServerResponse.notFound().build());
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()));
+	}
+
+	public Mono<ServerResponse> verFoto(ServerRequest request) {
+		String photo = request.pathVariable("photo");
+		return Mono.defer(() -> {
+			Optional<PhotoSizeEnum> size = request.queryParam("size").map(PhotoSizeEnum::fromSize);
+			return photoStorage.find(photo)
+					.flatMap(original -> size.isEmpty() ? toPhotoResponse(request, original, PHOTO_CACHE_CONTROL)
+							: photoStorage.findVariant(photo, size.get())
+									.flatMap(variant -> toPhotoResponse(request, variant, PHOTO_CACHE_CONTROL))
+									.switchIfEmpty(Mono.defer(() -> toPhotoResponse(request, original,
+											FALLBACK_PHOTO_CACHE_CONTROL))))
+					.switchIfEmpty(ServerResponse.notFound().build());
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()));
 	}
 
 	public Mono<ServerResponse> crear(ServerRequest request) {
@@ -116,28 +328,279 @@ public class ProductHandler {
 		});
 	}
 
+	public Mono<ServerResponse> crearLote(ServerRequest request) {
+		Flux<BulkItemResult> results = request.bodyToFlux(Product.class)
+				.index()
+				.buffer(bulkBatchSize)
+				.concatMap(this::insertBatch, 1);
+		return ServerResponse.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(results, BulkItemResult.class);
+	}
+
+	public Mono<ServerResponse> editarPrecioLote(ServerRequest request) {
+		return request.bodyToMono(BulkPriceUpdate.class).flatMap(update -> {
+			List<String> errors = validate(update);
+			if (!errors.isEmpty())
+				return ServerResponse.badRequest().bodyValue(errors);
+
+			return service.updatePriceByCategory(update.getCategoryId(), update.getFactor())
+					.flatMap(result -> ServerResponse.ok()
+							.contentType(MediaType.APPLICATION_JSON)
+							.bodyValue(Map.of("matched", result.getMatchedCount(),
+									"modified", result.getModifiedCount())));
+		});
+	}
+
+	public Mono<ServerResponse> eliminarLote(ServerRequest request) {
+		return request.queryParam("categoryId")
+				.filter(categoryId -> !categoryId.isBlank())
+				.map(categoryId -> service.deleteByCategory(categoryId)
+						.flatMap(result -> ServerResponse.ok()
+								.contentType(MediaType.APPLICATION_JSON)
+								.bodyValue(Map.of("deleted", result.getDeletedCount()))))
+				.orElseGet(() -> ServerResponse.badRequest().bodyValue("El parametro categoryId es obligatorio"));
+	}
+
 	public Mono<ServerResponse> editar(ServerRequest request) {
-		Mono<Product> productRequestMono = request.bodyToMono(Product.class);
 		String id = request.pathVariable("id");
-		Mono<Product> productPersistedMono = service.findById(id);
+		String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+		if (ifMatch == null)
+			return preconditionRequired();
 
-		return productPersistedMono.zipWith(productRequestMono, (productPersisted, productRequest) -> {
-			productPersisted.setName(productRequest.getName());
-			productPersisted.setPrice(productRequest.getPrice());
-			productPersisted.setCategory(productRequest.getCategory());
-			return productPersisted;
-		}).flatMap(product -> ServerResponse
-				.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute().concat(product.getId())))
-				.contentType(MediaType.APPLICATION_JSON)
-				.body(service.save(product), Product.class))
-		.switchIfEmpty(ServerResponse.notFound().build());
+		return Mono.defer(() -> {
+			Long expectedVersion = ETagUtils.parseVersion(ifMatch, id);
+			return request.bodyToMono(Product.class)
+					.flatMap(product -> {
+						List<String> errors = validate(product);
+						if (!errors.isEmpty())
+							return ServerResponse.badRequest().bodyValue(errors);
+
+						return service.update(id, product, expectedVersion)
+								.flatMap(productUpdated -> ServerResponse
+										.created(URI.create(RouteEnum.API_V2_PRODUCTS.getRoute()
+												.concat(productUpdated.getId())))
+										.contentType(MediaType.APPLICATION_JSON)
+										.eTag(ETagUtils.of(productUpdated, Collections.emptySet()))
+										.bodyValue(productUpdated))
+								.switchIfEmpty(ServerResponse.notFound().build());
+					})
+					.switchIfEmpty(ServerResponse.badRequest().build());
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()))
+		.onErrorResume(OptimisticLockingFailureException.class, exception -> ServerResponse
+				.status(HttpStatus.CONFLICT)
+				.bodyValue(exception.getMessage()));
+	}
+
+	public Mono<ServerResponse> editarParcial(ServerRequest request) {
+		String id = request.pathVariable("id");
+		String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+		if (ifMatch == null)
+			return preconditionRequired();
+
+		return Mono.defer(() -> {
+			Long expectedVersion = ETagUtils.parseVersion(ifMatch, id);
+			return request.bodyToMono(Product.class)
+					.flatMap(product -> service.patch(id, product, expectedVersion))
+					.flatMap(product -> ServerResponse.ok()
+							.contentType(MediaType.APPLICATION_JSON)
+							.eTag(ETagUtils.of(product, Collections.emptySet()))
+							.bodyValue(product))
+					.switchIfEmpty(ServerResponse.notFound().build());
+		}).onErrorResume(IllegalArgumentException.class, exception -> ServerResponse.badRequest()
+				.bodyValue(exception.getMessage()))
+		.onErrorResume(OptimisticLockingFailureException.class, exception -> ServerResponse
+				.status(HttpStatus.CONFLICT)
+				.bodyValue(exception.getMessage()));
 	}
 
 	public Mono<ServerResponse> eliminar(ServerRequest request) {
 		String id = request.pathVariable("id");
-		Mono<Product> productPersisted = service.findById(id);
-		return productPersisted.flatMap(product -> service.delete(product)
-				.then(ServerResponse.noContent().build()))
+		return service.deleteById(id)
+				.flatMap(product -> ServerResponse.noContent().build())
 				.switchIfEmpty(ServerResponse.notFound().build());
 	}
+
+	private Mono<Void> readPart(Product product, Part part, AtomicBoolean received) {
+		if (part instanceof FormFieldPart) {
+			String value = ((FormFieldPart) part).value();
+			switch (part.name()) {
+				case "nombre":
+					product.setName(value);
+					break;
+				case "precio":
+					try {
+						product.setPrice(Double.valueOf(value));
+					} catch (NumberFormatException exception) {
+						return Mono.error(new IllegalArgumentException("El campo precio debe ser numerico"));
+					}
+					break;
+				case "categoria.id":
+					product.getCategory().setId(value);
+					break;
+				case "categoria.nombre":
+					product.getCategory().setName(value);
+					break;
+				default:
+					break;
+			}
+			return Mono.empty();
+		}
+
+		return readPhoto(product, part, received);
+	}
+
+	// Only one photo is stored per request, a second file part would leave the first one stored without a product
+	private Mono<Void> readPhoto(Product product, Part part, AtomicBoolean received) {
+		if (isPhoto(part)) {
+			if (!received.compareAndSet(false, true))
+				return Mono.error(new IllegalArgumentException("El campo file solo admite un archivo"));
+
+			FilePart file = (FilePart) part;
+			product.setPhotoWithFormattedName(UUID.randomUUID().toString(), file.filename());
+			return photoStorage.save(product.getPhoto(), uploadValidator.validate(file.content()))
+					.doOnNext(product::setPhoto)
+					.then();
+		}
+
+		return part.content().doOnNext(DataBufferUtils::release).then();
+	}
+
+	private Mono<Product> replacePhoto(Product product, String filename, Flux<DataBuffer> content) {
+		String previousPhoto = product.getPhoto();
+		product.setPhotoWithFormattedName(UUID.randomUUID().toString(), filename);
+		return photoStorage.save(product.getPhoto(), uploadValidator.validate(content))
+				.flatMap(photo -> {
+					product.setPhoto(photo);
+					return service.save(product)
+							.onErrorResume(exception -> discardPhoto(photo).then(Mono.error(exception)));
+				})
+				.flatMap(productPersisted -> discardPhoto(previousPhoto).thenReturn(productPersisted));
+	}
+
+	private Mono<ServerResponse> toUploadResponse(ServerResponse.HeadersBuilder<?> response, UploadSession session) {
+		return response.header(HeaderEnum.UPLOAD_OFFSET.getHeader(), String.valueOf(session.getOffset()))
+				.header(HeaderEnum.UPLOAD_LENGTH.getHeader(), String.valueOf(session.getLength()))
+				.header(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue())
+				.build();
+	}
+
+	private boolean isPhoto(Part part) {
+		return part instanceof FilePart && part.name().equals("file");
+	}
+
+	private Mono<Void> discardPhoto(Product product) {
+		return discardPhoto(product.getPhoto());
+	}
+
+	private Mono<Void> discardPhoto(String photo) {
+		return photo == null ? Mono.empty() : photoStorage.delete(photo).then();
+	}
+
+	private Mono<ServerResponse> toPhotoResponse(ServerRequest request, StoredPhoto photo, String cacheControl) {
+		String eTag = ETagUtils.of(photo);
+		if (ETagUtils.matches(request.headers().header(HttpHeaders.IF_NONE_MATCH), eTag))
+			return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+
+		ServerResponse.BodyBuilder response = ServerResponse.ok()
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl)
+				.eTag(eTag);
+		if (photo.getFile() != null)
+			return response.body(BodyInserters.fromResource(photo.getFile()));
+
+		return response.contentType(MediaTypeFactory.getMediaType(photo.getName())
+						.orElse(MediaType.APPLICATION_OCTET_STREAM))
+				.contentLength(photo.getLength())
+				.body(BodyInserters.fromDataBuffers(photo.getContent()));
+	}
+
+	private Object toBody(Product product, Set<ProductFieldEnum> fields) {
+		return fields.isEmpty() ? product : ProductFieldEnum.toMap(product, fields);
+	}
+
+	private Flux<BulkItemResult> insertBatch(List<Tuple2<Long, Product>> batch) {
+		BulkItemResult[] results = new BulkItemResult[batch.size()];
+		List<Integer> positions = new ArrayList<>();
+		List<Product> products = new ArrayList<>();
+		for (int position = 0; position < batch.size(); position++) {
+			long index = batch.get(position).getT1();
+			Product product = batch.get(position).getT2();
+			List<String> errors = validate(product);
+			if (!errors.isEmpty()) {
+				results[position] = new BulkItemResult(index, null, HttpStatus.BAD_REQUEST.value(), errors);
+			} else {
+				if (product.getCreateAt() == null)
+					product.setCreateAt(new Date());
+
+				positions.add(position);
+				products.add(product);
+			}
+		}
+
+		if (products.isEmpty())
+			return Flux.fromArray(results);
+
+		return insertValid(batch, results, positions, products)
+				.flatMapMany(Flux::fromArray);
+	}
+
+	// The insert is ordered: the products before the failed one are written and the ones after it are retried
+	private Mono<BulkItemResult[]> insertValid(List<Tuple2<Long, Product>> batch, BulkItemResult[] results,
+			List<Integer> positions, List<Product> products) {
+		return service.insertAll(products)
+				.collectList()
+				.map(productsInserted -> {
+					for (int i = 0; i < positions.size(); i++)
+						results[positions.get(i)] = new BulkItemResult(batch.get(positions.get(i)).getT1(),
+								productsInserted.get(i).getId(), HttpStatus.CREATED.value(), null);
+					return results;
+				})
+				.onErrorResume(exception -> {
+					Optional<BulkWriteError> writeError = findFirstWriteError(exception);
+					if (writeError.isEmpty()) {
+						positions.forEach(position -> results[position] = new BulkItemResult(batch.get(position).getT1(),
+								null, HttpStatus.INTERNAL_SERVER_ERROR.value(), Arrays.asList(exception.getMessage())));
+						return Mono.just(results);
+					}
+
+					int failed = writeError.get().getIndex();
+					for (int i = 0; i < failed; i++)
+						results[positions.get(i)] = new BulkItemResult(batch.get(positions.get(i)).getT1(),
+								products.get(i).getId(), HttpStatus.CREATED.value(), null);
+					HttpStatus status = writeError.get().getCategory() == ErrorCategory.DUPLICATE_KEY ? HttpStatus.CONFLICT
+							: HttpStatus.INTERNAL_SERVER_ERROR;
+					results[positions.get(failed)] = new BulkItemResult(batch.get(positions.get(failed)).getT1(), null,
+							status.value(), Arrays.asList(writeError.get().getMessage()));
+					if (failed + 1 == products.size())
+						return Mono.just(results);
+
+					return insertValid(batch, results, positions.subList(failed + 1, positions.size()),
+							products.subList(failed + 1, products.size()));
+				});
+	}
+
+	private Optional<BulkWriteError> findFirstWriteError(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof MongoBulkWriteException)
+				return ((MongoBulkWriteException) cause).getWriteErrors().stream()
+						.min(Comparator.comparingInt(BulkWriteError::getIndex));
+		}
+		return Optional.empty();
+	}
+
+	// Without If-Match an update would silently overwrite concurrent changes, "*" opts out explicitly
+	private Mono<ServerResponse> preconditionRequired() {
+		return ServerResponse.status(HttpStatus.PRECONDITION_REQUIRED)
+				.bodyValue("El encabezado If-Match es obligatorio, use el ETag del producto o * para sobrescribirlo");
+	}
+
+	private List<String> validate(Object target) {
+		Errors errors = new BeanPropertyBindingResult(target, target.getClass().getName());
+		validator.validate(target, errors);
+		List<String> messages = new ArrayList<>();
+		errors.getFieldErrors().forEach(fieldError -> messages
+				.add("El campo " + fieldError.getField() + " " + fieldError.getDefaultMessage()));
+		return messages;
+	}
 }
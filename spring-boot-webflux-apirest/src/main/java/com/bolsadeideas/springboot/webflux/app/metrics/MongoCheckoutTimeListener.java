@@ -0,0 +1,70 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+@Component
+public class MongoCheckoutTimeListener implements ConnectionPoolListener {
+
+	public static final String METER_NAME = "mongodb.driver.pool.checkout";
+
+	private final MeterRegistry registry;
+
+	private final Map<ServerId, Queue<Long>> checkouts = new ConcurrentHashMap<>();
+
+	public MongoCheckoutTimeListener(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+		checkouts.computeIfAbsent(event.getServerId(), serverId -> new ConcurrentLinkedQueue<>()).offer(System.nanoTime());
+	}
+
+	@Override
+	public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+		record(event.getConnectionId().getServerId(), "success");
+	}
+
+	@Override
+	public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+		record(event.getServerId(), event.getReason().name().toLowerCase());
+	}
+
+	@Override
+	public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+		checkouts.remove(event.getServerId());
+	}
+
+	// The driver events carry no checkout id, so each finished checkout is paired with the oldest pending one
+	// of its server. Checkouts that finish out of order (a timeout, or a waiter served before an older one) swap
+	// their times, so single samples and percentiles are approximate; the count and total waiting time are exact
+	protected void record(ServerId serverId, String status) {
+		Queue<Long> pending = checkouts.get(serverId);
+		Long startedAt = pending == null ? null : pending.poll();
+		if (startedAt == null)
+			return;
+
+		Timer.builder(METER_NAME)
+				.description("Time spent waiting for a connection from the pool, approximate per checkout since "
+						+ "checkouts are paired with the oldest pending one of the server")
+				.tag("cluster.id", serverId.getClusterId().getValue())
+				.tag("server.address", serverId.getAddress().toString())
+				.tag("status", status)
+				.register(registry)
+				.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+	}
+}
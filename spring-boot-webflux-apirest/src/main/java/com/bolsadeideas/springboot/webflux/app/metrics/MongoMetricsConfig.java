@@ -0,0 +1,21 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Spring Boot already registers the Micrometer command timer and pool gauges (size, checked out, wait queue)
+// through the same customizer; these add the checkout time and the slow query log
+@Configuration
+public class MongoMetricsConfig {
+
+	@Bean
+	public MongoClientSettingsBuilderCustomizer mongoDiagnosticsCustomizer(MongoCheckoutTimeListener checkoutTimeListener,
+			ObjectProvider<SlowQueryLogger> slowQueryLogger) {
+		return builder -> {
+			builder.applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(checkoutTimeListener));
+			slowQueryLogger.ifAvailable(builder::addCommandListener);
+		};
+	}
+}
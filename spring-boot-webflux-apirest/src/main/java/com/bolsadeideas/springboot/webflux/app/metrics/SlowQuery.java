@@ -0,0 +1,128 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import com.mongodb.event.CommandStartedEvent;
+
+public class SlowQuery {
+
+	private static final Set<String> EXPLAINABLE_COMMANDS = Set.of("find", "aggregate", "count");
+
+	private final String database;
+
+	private final String command;
+
+	private final String collection;
+
+	private final BsonValue filter;
+
+	private final BsonValue sort;
+
+	public SlowQuery(String database, String command, String collection, BsonValue filter, BsonValue sort) {
+		this.database = database;
+		this.command = command;
+		this.collection = collection;
+		this.filter = filter;
+		this.sort = sort;
+	}
+
+	// The command document is a view over the outgoing buffer and only valid while the event is being handled, but
+	// each get decodes its value into a detached document, so the parts to log are kept without copying them again
+	public static SlowQuery from(CommandStartedEvent event) {
+		BsonDocument command = event.getCommand();
+		String name = event.getCommandName();
+		BsonValue collection = command.get(name);
+		return new SlowQuery(event.getDatabaseName(), name,
+				collection != null && collection.isString() ? collection.asString().getValue() : null,
+				getFilter(command, name), "find".equals(name) ? command.get("sort") : null);
+	}
+
+	public String getDatabase() {
+		return database;
+	}
+
+	public String getCommand() {
+		return command;
+	}
+
+	public String getCollection() {
+		return collection;
+	}
+
+	public BsonValue getFilter() {
+		return filter;
+	}
+
+	public BsonValue getSort() {
+		return sort;
+	}
+
+	public boolean isExplainable() {
+		return collection != null && EXPLAINABLE_COMMANDS.contains(command);
+	}
+
+	public BsonDocument toExplainCommand() {
+		BsonDocument explained = new BsonDocument(command, new BsonString(collection));
+		switch (command) {
+		case "find":
+			append(explained, "filter", filter);
+			append(explained, "sort", sort);
+			break;
+		case "aggregate":
+			append(explained, "pipeline", filter);
+			explained.append("cursor", new BsonDocument());
+			break;
+		default:
+			append(explained, "query", filter);
+		}
+		return new BsonDocument("explain", explained).append("verbosity", new BsonString("queryPlanner"));
+	}
+
+	@Override
+	public String toString() {
+		return command + " " + database + "." + collection + " filtro=" + toJson(filter) + " orden=" + toJson(sort);
+	}
+
+	private static BsonValue getFilter(BsonDocument command, String name) {
+		switch (name) {
+		case "find":
+			return command.get("filter");
+		case "aggregate":
+			return command.get("pipeline");
+		case "update":
+			return getFirstStatementFilter(command, "updates");
+		case "delete":
+			return getFirstStatementFilter(command, "deletes");
+		default:
+			return command.get("query");
+		}
+	}
+
+	private static BsonValue getFirstStatementFilter(BsonDocument command, String statements) {
+		BsonValue values = command.get(statements);
+		if (values == null || !values.isArray() || values.asArray().isEmpty() || !values.asArray().get(0).isDocument())
+			return null;
+
+		return values.asArray().get(0).asDocument().get("q");
+	}
+
+	private static void append(BsonDocument document, String key, BsonValue value) {
+		if (value != null)
+			document.append(key, value);
+	}
+
+	private static String toJson(BsonValue value) {
+		if (value == null)
+			return "{}";
+		if (value.isDocument())
+			return value.asDocument().toJson();
+		if (value.isArray())
+			return value.asArray().getValues().stream().map(SlowQuery::toJson).collect(Collectors.joining(", ", "[", "]"));
+
+		return value.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.reactivestreams.client.MongoClient;
+
+@Component
+@ConditionalOnProperty(name = "config.mongo.slow-query.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryLogger implements CommandListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(SlowQueryLogger.class);
+
+	private static final Set<String> LOGGED_COMMANDS = Set.of("find", "aggregate", "count", "distinct", "findAndModify",
+			"update", "delete");
+
+	private final Map<Integer, SlowQuery> running = new ConcurrentHashMap<>();
+
+	// Lazy, since the client is built with this listener already registered
+	@Autowired
+	private ObjectProvider<MongoClient> mongoClient;
+
+	@Value("${config.mongo.slow-query.threshold}")
+	private Duration threshold;
+
+	@Value("${config.mongo.slow-query.explain-sample-rate}")
+	private double explainSampleRate;
+
+	@Override
+	public void commandStarted(CommandStartedEvent event) {
+		if (LOGGED_COMMANDS.contains(event.getCommandName()))
+			running.put(event.getRequestId(), SlowQuery.from(event));
+	}
+
+	@Override
+	public void commandSucceeded(CommandSucceededEvent event) {
+		finish(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS), null);
+	}
+
+	@Override
+	public void commandFailed(CommandFailedEvent event) {
+		finish(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS), event.getThrowable());
+	}
+
+	protected void finish(int requestId, long elapsedNanos, Throwable error) {
+		SlowQuery query = running.remove(requestId);
+		if (query == null || elapsedNanos < threshold.toNanos())
+			return;
+
+		logger.warn("Consulta lenta de " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms: " + query
+				+ (error == null ? "" : " error=" + error.getMessage()));
+		if (query.isExplainable() && ThreadLocalRandom.current().nextDouble() < explainSampleRate)
+			explain(query);
+	}
+
+	protected void explain(SlowQuery query) {
+		Mono.from(mongoClient.getObject().getDatabase(query.getDatabase()).runCommand(query.toExplainCommand()))
+				.subscribe(plan -> logger.warn("Plan de la consulta lenta " + query.getDatabase() + "."
+								+ query.getCollection() + ": " + plan.get("queryPlanner", plan).toJson()),
+						error -> logger.warn("No se obtuvo el plan de la consulta lenta: " + error.getMessage()));
+	}
+
+	protected int getRunningCount() {
+		return running.size();
+	}
+}
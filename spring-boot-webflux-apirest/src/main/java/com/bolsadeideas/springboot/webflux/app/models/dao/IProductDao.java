@@ -10,6 +10,6 @@ public interface IProductDao extends ReactiveMongoRepository<Product, String> {
 
 	 public Mono<Product> findByName(String name);
 	 
-	 @Query("{ 'nombre': ?0 }")
+	 @Query("{ 'name': ?0 }")
 	 public Mono<Product> getByName(String name);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.bolsadeideas.springboot.webflux.app.models.documents;
 
 import javax.validation.constraints.NotEmpty;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "categorias")
@@ -11,6 +12,7 @@ public class Category {
 	@NotEmpty
 	private String id;
 	
+	@Indexed
 	private String name;
 	
 	public Category() {
@@ -20,6 +22,11 @@ public class Category {
 		this.name = name;
 	}
 
+	public Category(Category category) {
+		this(category.getName());
+		this.id = category.getId();
+	}
+
 	public String getId() {
 		return id;
 	}
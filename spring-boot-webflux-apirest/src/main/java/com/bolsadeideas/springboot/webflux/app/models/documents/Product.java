@@ -5,22 +5,29 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Document(collection="productos")
+@CompoundIndex(name = "category_price", def = "{ 'category._id': 1, 'price': 1 }")
 public class Product {
 	
 	@Id
 	private String id;
 	
 	@NotEmpty
+	@Indexed
 	private String name;
 	
 	@NotNull
 	private Double price;
 	
 	@DateTimeFormat(pattern = "yyyy-MM-dd")
+	@Indexed
 	private Date createAt;
 	
 	@Valid
@@ -28,6 +35,10 @@ public class Product {
 	private Category category;
 	
 	private String photo;
+	
+	@Version
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	private Long version;
 
 	public Product() {}
 
@@ -40,6 +51,15 @@ public class Product {
 		this(name, price);
 		this.category = category;
 	}
+
+	public Product(Product product) {
+		this(product.getName(), product.getPrice(),
+				product.getCategory() == null ? null : new Category(product.getCategory()));
+		this.id = product.getId();
+		this.createAt = product.getCreateAt() == null ? null : new Date(product.getCreateAt().getTime());
+		this.photo = product.getPhoto();
+		this.version = product.getVersion();
+	}
 	
 	public Product setNameToUpperCase() {
 		this.setName(this.getName().toUpperCase());
@@ -106,4 +126,12 @@ public class Product {
 	public void setPhoto(String photo) {
 		this.photo = photo;
 	}
+	
+	public Long getVersion() {
+		return version;
+	}
+	
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
@@ -0,0 +1,56 @@
+package com.bolsadeideas.springboot.webflux.app.models.dto;
+
+import java.util.List;
+
+public class BulkItemResult {
+
+	private long index;
+
+	private String id;
+
+	private int status;
+
+	private List<String> errors;
+
+	public BulkItemResult() {
+	}
+
+	public BulkItemResult(long index, String id, int status, List<String> errors) {
+		this.index = index;
+		this.id = id;
+		this.status = status;
+		this.errors = errors;
+	}
+
+	public long getIndex() {
+		return index;
+	}
+
+	public void setIndex(long index) {
+		this.index = index;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	public void setErrors(List<String> errors) {
+		this.errors = errors;
+	}
+}
@@ -0,0 +1,39 @@
+package com.bolsadeideas.springboot.webflux.app.models.dto;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+public class BulkPriceUpdate {
+
+	@NotEmpty
+	private String categoryId;
+
+	@NotNull
+	@Positive
+	private Double factor;
+
+	public BulkPriceUpdate() {
+	}
+
+	public BulkPriceUpdate(String categoryId, Double factor) {
+		this.categoryId = categoryId;
+		this.factor = factor;
+	}
+
+	public String getCategoryId() {
+		return categoryId;
+	}
+
+	public void setCategoryId(String categoryId) {
+		this.categoryId = categoryId;
+	}
+
+	public Double getFactor() {
+		return factor;
+	}
+
+	public void setFactor(Double factor) {
+		this.factor = factor;
+	}
+}
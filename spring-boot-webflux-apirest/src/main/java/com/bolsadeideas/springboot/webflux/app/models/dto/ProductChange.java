@@ -0,0 +1,58 @@
+package com.bolsadeideas.springboot.webflux.app.models.dto;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public class ProductChange {
+
+	private String operation;
+
+	private String productId;
+
+	private Product product;
+
+	@JsonIgnore
+	private String resumeToken;
+
+	public ProductChange() {
+	}
+
+	public ProductChange(String operation, String productId, Product product, String resumeToken) {
+		this.operation = operation;
+		this.productId = productId;
+		this.product = product;
+		this.resumeToken = resumeToken;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public Product getProduct() {
+		return product;
+	}
+
+	public void setProduct(Product product) {
+		this.product = product;
+	}
+
+	public String getResumeToken() {
+		return resumeToken;
+	}
+
+	public void setResumeToken(String resumeToken) {
+		this.resumeToken = resumeToken;
+	}
+}
@@ -0,0 +1,40 @@
+package com.bolsadeideas.springboot.webflux.app.models.dto;
+
+import java.util.List;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+public class ProductPage {
+
+	private List<Product> content;
+
+	private String next;
+
+	public ProductPage() {
+	}
+
+	public ProductPage(List<Product> content, String next) {
+		this.content = content;
+		this.next = next;
+	}
+
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	public List<Product> getContent() {
+		return content;
+	}
+
+	public void setContent(List<Product> content) {
+		this.content = content;
+	}
+
+	public String getNext() {
+		return next;
+	}
+
+	public void setNext(String next) {
+		this.next = next;
+	}
+}
@@ -0,0 +1,10 @@
+package com.bolsadeideas.springboot.webflux.app.models.services;
+
+import reactor.core.publisher.Flux;
+
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductChange;
+
+public interface ProductChangeService {
+
+	public Flux<ProductChange> findChanges(String resumeToken);
+}
@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.app.models.services;
+
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductChange;
+import com.mongodb.client.model.changestream.OperationType;
+
+@Service
+public class ProductChangeServiceImpl implements ProductChangeService {
+
+	private static final String RESUME_TOKEN_KEY = "_data";
+
+	@Autowired
+	private ReactiveMongoTemplate mongoTemplate;
+
+	private final Flux<ProductChange> sharedChanges = Flux.defer(() -> watch(null)).share();
+
+	@Override
+	public Flux<ProductChange> findChanges(String resumeToken) {
+		if (resumeToken == null || resumeToken.isBlank())
+			return sharedChanges;
+
+		return watch(new BsonDocument(RESUME_TOKEN_KEY, new BsonString(resumeToken)));
+	}
+
+	protected Flux<ProductChange> watch(BsonValue resumeToken) {
+		ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+				.filter(new Document("$match", new Document("operationType",
+						new Document("$in", List.of("insert", "update", "replace", "delete")))))
+				.returnFullDocumentOnUpdate();
+		if (resumeToken != null)
+			options.resumeAfter(resumeToken);
+
+		return mongoTemplate.changeStream(mongoTemplate.getCollectionName(Product.class), options.build(), Product.class)
+				.map(this::toProductChange);
+	}
+
+	protected ProductChange toProductChange(ChangeStreamEvent<Product> event) {
+		Product product = event.getBody();
+		String productId = product != null ? product.getId()
+				: event.getRaw().getDocumentKey().getObjectId("_id").getValue().toHexString();
+		return new ProductChange(getOperation(event.getOperationType()), productId, product,
+				getResumeToken(event.getResumeToken()));
+	}
+
+	private String getOperation(OperationType operationType) {
+		return operationType == OperationType.REPLACE ? OperationType.UPDATE.getValue() : operationType.getValue();
+	}
+
+	private String getResumeToken(BsonValue resumeToken) {
+		if (resumeToken == null)
+			return null;
+
+		return resumeToken.asDocument().getString(RESUME_TOKEN_KEY).getValue();
+	}
+}
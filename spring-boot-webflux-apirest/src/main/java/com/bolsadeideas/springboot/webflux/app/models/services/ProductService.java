@@ -1,25 +1,59 @@
 package com.bolsadeideas.springboot.webflux.app.models.services;
 
+import java.util.List;
+import java.util.Set;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductPage;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 
 public interface ProductService {
 	
 	public Flux<Product> findAll();
 	
+	public Flux<Product> findAll(Set<ProductFieldEnum> fields);
+	
+	public Flux<Product> findAllStream();
+	
+	public Flux<Product> findAllAfter(String after, int limit);
+	
+	public Flux<Product> findAllAfter(String after, int limit, Set<ProductFieldEnum> fields);
+	
+	public Mono<ProductPage> findPage(String after, Integer limit);
+	
+	public Mono<ProductPage> findPage(String after, Integer limit, Set<ProductFieldEnum> fields);
+	
 	public Flux<Product> findAllWithNameUpperCase();
 	
 	public Flux<Product> findAllWithNameUpperCaseRepeat();
 	
 	public Mono<Product> findById(String id);
 	
+	public Mono<Product> findById(String id, Set<ProductFieldEnum> fields);
+	
+	public Mono<String> findCatalogVersion();
+	
 	public Mono<Product> save(Product product);
 	
+	public Mono<Product> update(String id, Product product, Long expectedVersion);
+	
+	public Mono<Product> patch(String id, Product product, Long expectedVersion);
+	
+	public Flux<Product> insertAll(List<Product> products);
+	
 	public Mono<Void> delete(Product product);
 	
+	public Mono<Product> deleteById(String id);
+	
+	public Mono<UpdateResult> updatePriceByCategory(String categoryId, double factor);
+	
+	public Mono<DeleteResult> deleteByCategory(String categoryId);
+	
 	public Flux<Category> findAllCategories();
 	
 	public Mono<Category> findCategoryById(String id);
@@ -1,76 +1,335 @@
 package com.bolsadeideas.springboot.webflux.app.models.services;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import com.bolsadeideas.springboot.webflux.app.cache.ProductCache;
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
 import com.bolsadeideas.springboot.webflux.app.models.dao.ICategoryDao;
 import com.bolsadeideas.springboot.webflux.app.models.dao.IProductDao;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductPage;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 
 @Service
 public class ProductServiceImpl implements ProductService {
 
+	private static final Logger logger = LoggerFactory.getLogger(ProductServiceImpl.class);
+
+	private static final String VERSIONS_COLLECTION = "versiones";
+
+	private static final String CATALOG_VERSION_ID = "productos";
+
+	private static final String METRICS_NAME = "productos.servicio";
+
 	@Autowired
 	private IProductDao productDao;
 	
 	@Autowired
 	private ICategoryDao categoryDao;
+
+	@Autowired
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@Autowired
+	private ProductCache productCache;
+
+	@Autowired
+	private PhotoStorage photoStorage;
+
+	@Value("${config.pagination.default-limit}")
+	private int defaultLimit;
+
+	@Value("${config.pagination.max-limit}")
+	private int maxLimit;
+
+	@Value("${config.stream.batch-size}")
+	private int streamBatchSize;
 	
 	@Override
 	public Flux<Product> findAll() {
-		return productDao.findAll();
+		return metrics(productDao.findAll(), "findAll");
+	}
+
+	@Override
+	public Flux<Product> findAll(Set<ProductFieldEnum> fields) {
+		if (fields.isEmpty())
+			return findAll();
+
+		return metrics(mongoTemplate.find(project(new Query(), fields), Product.class), "findAll");
+	}
+
+	@Override
+	public Flux<Product> findAllStream() {
+		return metrics(productDao.findAll().limitRate(streamBatchSize), "findAllStream");
+	}
+
+	@Override
+	public Flux<Product> findAllAfter(String after, int limit) {
+		return findAllAfter(after, limit, Collections.emptySet());
+	}
+
+	@Override
+	public Flux<Product> findAllAfter(String after, int limit, Set<ProductFieldEnum> fields) {
+		return metrics(findAfter(after, limit, fields), "findAllAfter");
+	}
+
+	@Override
+	public Mono<ProductPage> findPage(String after, Integer limit) {
+		return findPage(after, limit, Collections.emptySet());
+	}
+
+	@Override
+	public Mono<ProductPage> findPage(String after, Integer limit, Set<ProductFieldEnum> fields) {
+		int pageSize = getPageSize(limit);
+		return metrics(findAfter(after, pageSize + 1, fields)
+				.collectList()
+				.map(products -> {
+					if (products.size() <= pageSize)
+						return new ProductPage(products, null);
+
+					List<Product> content = products.subList(0, pageSize);
+					return new ProductPage(content, content.get(pageSize - 1).getId());
+				}), "findPage");
 	}
 
 	@Override
 	public Mono<Product> findById(String id) {
-		return productDao.findById(id);
+		return metrics(productCache.get(id, productDao::findById), "findById");
+	}
+
+	@Override
+	public Mono<Product> findById(String id, Set<ProductFieldEnum> fields) {
+		if (fields.isEmpty())
+			return findById(id);
+
+		return metrics(mongoTemplate.findOne(project(new Query(Criteria.where("id").is(id)), fields), Product.class),
+				"findById");
+	}
+
+	@Override
+	public Mono<String> findCatalogVersion() {
+		return metrics(mongoTemplate.findById(CATALOG_VERSION_ID, Document.class, VERSIONS_COLLECTION)
+				.map(document -> String.valueOf(document.get("version", Number.class).longValue()))
+				.defaultIfEmpty("0"), "findCatalogVersion");
 	}
 
 	@Override
 	public Mono<Product> save(Product product) {
-		return productDao.save(product);
+		return metrics(productDao.save(product)
+				.flatMap(productSaved -> productCache.evict(productSaved.getId())
+						.then(touchCatalog())
+						.thenReturn(productSaved))
+				.onErrorResume(error -> productCache.evict(product.getId()).then(Mono.error(error))), "save");
+	}
+
+	@Override
+	public Mono<Product> update(String id, Product product, Long expectedVersion) {
+		Update update = new Update()
+				.set("name", product.getName())
+				.set("price", product.getPrice())
+				.set("category", product.getCategory());
+		return metrics(findAndModify(id, update, expectedVersion), "update");
+	}
+
+	@Override
+	public Mono<Product> patch(String id, Product product, Long expectedVersion) {
+		Update update = new Update();
+		if (product.getName() != null)
+			update.set("name", product.getName());
+		if (product.getPrice() != null)
+			update.set("price", product.getPrice());
+		if (product.getCreateAt() != null)
+			update.set("createAt", product.getCreateAt());
+		if (product.getCategory() != null)
+			update.set("category", product.getCategory());
+
+		if (update.getUpdateObject().isEmpty())
+			return metrics(Mono.error(new IllegalArgumentException("No fields to update")), "patch");
+
+		return metrics(findAndModify(id, update, expectedVersion), "patch");
+	}
+
+	@Override
+	public Flux<Product> insertAll(List<Product> products) {
+		// Ids are assigned up front so a partially failed ordered insert still tells which products were written
+		products.stream()
+				.filter(product -> product.getId() == null)
+				.forEach(product -> product.setId(new ObjectId().toHexString()));
+		return metrics(mongoTemplate.insert(products, Product.class)
+				.onErrorResume(error -> touchCatalog().then(Mono.error(error)))
+				.concatWith(Mono.defer(this::touchCatalog).then(Mono.empty())), "insertAll");
 	}
 
 	@Override
 	public Mono<Void> delete(Product product) {
-		return productDao.delete(product);
+		return metrics(productDao.delete(product)
+				.then(productCache.evict(product.getId()))
+				.then(touchCatalog()), "delete");
+	}
+
+	@Override
+	public Mono<Product> deleteById(String id) {
+		Query query = new Query(Criteria.where("id").is(id));
+		query.fields().include("photo");
+		return metrics(mongoTemplate.findAndRemove(query, Product.class)
+				.flatMap(product -> productCache.evict(id)
+						.then(touchCatalog())
+						.thenReturn(product))
+				.doOnNext(this::deletePhoto), "deleteById");
+	}
+
+	@Override
+	public Mono<UpdateResult> updatePriceByCategory(String categoryId, double factor) {
+		return metrics(mongoTemplate.updateMulti(new Query(Criteria.where("category.id").is(categoryId)),
+				new Update().multiply("price", factor).inc("version", 1), Product.class)
+				.flatMap(result -> productCache.evictAll().then(touchCatalog()).thenReturn(result)),
+				"updatePriceByCategory");
+	}
+
+	@Override
+	public Mono<DeleteResult> deleteByCategory(String categoryId) {
+		// The photos are read with a projected find before the single filtered remove, a product moved to another
+		// category in between keeps its document but loses its photo, one added in between keeps an orphan photo
+		Criteria byCategory = Criteria.where("category.id").is(categoryId);
+		Query photos = new Query(Criteria.where("category.id").is(categoryId).and("photo").ne(null));
+		photos.fields().include("photo");
+		return metrics(mongoTemplate.find(photos, Product.class)
+				.collectList()
+				.flatMap(products -> mongoTemplate.remove(new Query(byCategory), Product.class)
+						.doOnNext(result -> products.forEach(this::deletePhoto)))
+				.flatMap(result -> productCache.evictAll()
+						.then(touchCatalog())
+						.thenReturn(result)),
+				"deleteByCategory");
 	}
 
 	@Override
 	public Flux<Product> findAllWithNameUpperCase() {
-		return productDao.findAll().map(Product::setNameToUpperCase);
+		return metrics(findWithNameUpperCase(), "findAllWithNameUpperCase");
 	}
 
 	@Override
 	public Flux<Product> findAllWithNameUpperCaseRepeat() {
-		return findAllWithNameUpperCase().repeat(5);
+		return metrics(findWithNameUpperCase().repeat(5), "findAllWithNameUpperCaseRepeat");
 	}
 
 	@Override
 	public Flux<Category> findAllCategories() {
-		return categoryDao.findAll();
+		return metrics(categoryDao.findAll(), "findAllCategories");
 	}
 
 	@Override
 	public Mono<Category> findCategoryById(String id) {
-		return categoryDao.findById(id);
+		return metrics(categoryDao.findById(id), "findCategoryById");
 	}
 
 	@Override
 	public Mono<Category> saveCategory(Category category) {
-		return categoryDao.save(category);
+		return metrics(categoryDao.save(category), "saveCategory");
 	}
 
 	@Override
 	public Mono<Product> findByName(String name) {
-		return productDao.getByName(name);
+		return metrics(productDao.getByName(name), "findByName");
 	}
 
 	@Override
 	public Mono<Category> findCategoryByName(String Name) {
-		return categoryDao.findByName(Name);
+		return metrics(categoryDao.findByName(Name), "findCategoryByName");
+	}
+
+	// The pipelines below are not metered, so that every public method that builds on them is counted once
+	protected Flux<Product> findAfter(String after, int limit, Set<ProductFieldEnum> fields) {
+		if (after != null && !ObjectId.isValid(after))
+			return Flux.error(new IllegalArgumentException("Invalid cursor: " + after));
+
+		Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).limit(limit);
+		if (after != null)
+			query.addCriteria(Criteria.where("id").gt(new ObjectId(after)));
+
+		return mongoTemplate.find(project(query, fields), Product.class);
+	}
+
+	protected Flux<Product> findWithNameUpperCase() {
+		return productDao.findAll().map(Product::setNameToUpperCase);
+	}
+
+	protected Query project(Query query, Set<ProductFieldEnum> fields) {
+		fields.forEach(field -> query.fields().include(field.getField()));
+		if (!fields.isEmpty())
+			query.fields().include(ProductFieldEnum.VERSION.getField());
+		return query;
+	}
+
+	protected Mono<Product> findAndModify(String id, Update update, Long expectedVersion) {
+		Query query = new Query(Criteria.where("id").is(id));
+		if (expectedVersion != null)
+			query.addCriteria(Criteria.where("version").is(expectedVersion));
+
+		return mongoTemplate.findAndModify(query, update.inc("version", 1), FindAndModifyOptions.options().returnNew(true),
+				Product.class)
+				.switchIfEmpty(Mono.defer(() -> expectedVersion == null ? Mono.empty()
+						: mongoTemplate.exists(new Query(Criteria.where("id").is(id)), Product.class)
+								.flatMap(exists -> exists
+										? Mono.error(new OptimisticLockingFailureException("Product " + id
+												+ " is no longer at version " + expectedVersion))
+										: Mono.empty())))
+				.flatMap(productUpdated -> productCache.evict(id)
+						.then(touchCatalog())
+						.thenReturn(productUpdated));
+	}
+
+	protected void deletePhoto(Product product) {
+		if (product.getPhoto() == null)
+			return;
+
+		photoStorage.delete(product.getPhoto())
+				.subscribe(null, error -> logger.error("Error al eliminar la foto " + product.getPhoto(), error));
+	}
+
+	// Bumped after the products are written, never before: a list read in between may pair the new products with the
+	// old tag, which only costs one more 200, while bumping first could leave the old products cached under the new tag
+	protected Mono<Void> touchCatalog() {
+		return mongoTemplate.upsert(new Query(Criteria.where("_id").is(CATALOG_VERSION_ID)),
+				new Update().inc("version", 1), VERSIONS_COLLECTION)
+				.then();
+	}
+
+	// Each pipeline publishes productos.servicio.* meters to the global registry, tagged by method: subscriptions,
+	// flow duration by completion status (completed, completedEmpty, error, cancelled), onNext delay and requests
+	protected <T> Flux<T> metrics(Flux<T> flux, String method) {
+		return flux.name(METRICS_NAME).tag("method", method).metrics();
+	}
+
+	protected <T> Mono<T> metrics(Mono<T> mono, String method) {
+		return mono.name(METRICS_NAME).tag("method", method).metrics();
+	}
+
+	protected int getPageSize(Integer limit) {
+		if (limit == null || limit < 1)
+			return defaultLimit;
+
+		return Math.min(limit, maxLimit);
 	}
 }
@@ -0,0 +1,186 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.UUID;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+
+@Component
+@ConditionalOnProperty(name = "config.uploads.storage", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemPhotoStorage implements PhotoStorage {
+
+	private static final String REFERENCES_COLLECTION = "fotos";
+
+	private static final int RESERVE_ATTEMPTS = 10;
+
+	@Autowired
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@Autowired
+	private PhotoVariants photoVariants;
+
+	@Value("${config.uploads.path}")
+	private String path;
+
+	@Value("${config.uploads.content-addressed}")
+	private boolean contentAddressed;
+
+	@Override
+	public Mono<String> save(String photo, Flux<DataBuffer> content) {
+		return store(photo, content)
+				.doOnNext(stored -> photoVariants.generate(stored, StoredPhoto.read(Paths.get(path, stored))));
+	}
+
+	@Override
+	public Mono<Boolean> delete(String photo) {
+		if (!contentAddressed)
+			return deletePhoto(photo);
+
+		return mongoTemplate.findAndModify(byId(photo), new Update().inc("refs", -1),
+				FindAndModifyOptions.options().returnNew(true), Document.class, REFERENCES_COLLECTION)
+				.flatMap(references -> references.get("refs", Number.class).longValue() > 0 ? Mono.just(false)
+						: collect(photo))
+				.switchIfEmpty(Mono.defer(() -> deletePhoto(photo)));
+	}
+
+	@Override
+	public Mono<StoredPhoto> find(String photo) {
+		return Mono.fromCallable(() -> {
+			Path uploads = Paths.get(path).toAbsolutePath().normalize();
+			Path file = uploads.resolve(photo).normalize();
+			return file.startsWith(uploads) && Files.isRegularFile(file) ? StoredPhoto.of(file) : null;
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	@Override
+	public Mono<StoredPhoto> findVariant(String photo, PhotoSizeEnum size) {
+		return Mono.fromCallable(() -> {
+			Path variant = photoVariants.find(photo, size);
+			return variant == null ? null : StoredPhoto.of(variant);
+		}).subscribeOn(Schedulers.boundedElastic());
+	}
+
+	protected Mono<String> store(String photo, Flux<DataBuffer> content) {
+		if (!contentAddressed)
+			return write(content, Paths.get(path, photo)).thenReturn(photo);
+
+		MessageDigest digest = sha256();
+		Path temp = Paths.get(path, "." + UUID.randomUUID() + ".tmp");
+		return writeTemp(content.doOnNext(buffer -> digest.update(buffer.asByteBuffer())), temp)
+				.then(Mono.defer(() -> {
+					String blob = HexFormat.of().formatHex(digest.digest()) + extension(photo);
+					return reserve(blob)
+							.then(Mono.defer(() -> place(temp, blob)
+									.then(Mono.defer(() -> mongoTemplate.updateFirst(byId(blob),
+											new Update().inc("refs", 1).inc("pending", -1), REFERENCES_COLLECTION)))
+									.onErrorResume(error -> mongoTemplate.updateFirst(byId(blob),
+											new Update().inc("pending", -1), REFERENCES_COLLECTION).then(Mono.error(error)))))
+							.thenReturn(blob);
+				}))
+				.onErrorResume(error -> deleteFile(temp).then(Mono.error(error)))
+				.doOnCancel(() -> deleteFile(temp).subscribe());
+	}
+
+	// A save holds a reservation on the blob while it places the file, so the last delete cannot remove it in between.
+	// The upsert cannot match a blob whose deletion is underway and fails on its id, the save retries until it is gone
+	protected Mono<Void> reserve(String blob) {
+		return mongoTemplate.upsert(new Query(Criteria.where("_id").is(blob).and("deleting").ne(true)),
+				new Update().inc("pending", 1), REFERENCES_COLLECTION)
+				.retryWhen(Retry.backoff(RESERVE_ATTEMPTS, Duration.ofMillis(20))
+						.filter(DuplicateKeyException.class::isInstance))
+				.then();
+	}
+
+	protected Mono<Void> place(Path temp, String blob) {
+		return Mono.fromCallable(() -> {
+			Path destination = Paths.get(path, blob);
+			if (Files.exists(destination))
+				Files.delete(temp);
+			else
+				Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE);
+			return destination;
+		}).subscribeOn(Schedulers.boundedElastic()).then();
+	}
+
+	// Only the caller that flags an unreferenced blob without reservations deletes its file, the flag is cleared if the
+	// deletion fails so that saves are not kept waiting
+	protected Mono<Boolean> collect(String blob) {
+		Query unreferenced = new Query(Criteria.where("_id").is(blob).and("refs").lte(0).and("pending").not().gt(0)
+				.and("deleting").ne(true));
+		return mongoTemplate.findAndModify(unreferenced, new Update().set("deleting", true), Document.class,
+				REFERENCES_COLLECTION)
+				.flatMap(claimed -> deletePhoto(blob)
+						.onErrorResume(error -> mongoTemplate.updateFirst(byId(blob), new Update().unset("deleting"),
+								REFERENCES_COLLECTION).then(Mono.error(error)))
+						.flatMap(deleted -> mongoTemplate.remove(byId(blob), REFERENCES_COLLECTION).thenReturn(deleted)))
+				.defaultIfEmpty(false);
+	}
+
+	protected Mono<Void> write(Flux<DataBuffer> content, Path destination) {
+		Path temp = destination.resolveSibling("." + destination.getFileName() + ".tmp");
+		return writeTemp(content, temp)
+				.then(Mono.fromCallable(() -> Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE))
+						.subscribeOn(Schedulers.boundedElastic()))
+				.onErrorResume(error -> deleteFile(temp).then(Mono.error(error)))
+				.doOnCancel(() -> deleteFile(temp).subscribe())
+				.then();
+	}
+
+	protected Mono<Void> writeTemp(Flux<DataBuffer> content, Path temp) {
+		return DataBufferUtils.write(content, temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	protected Mono<Boolean> deletePhoto(String photo) {
+		return deleteFile(Paths.get(path, photo))
+				.flatMap(deleted -> photoVariants.delete(photo).thenReturn(deleted));
+	}
+
+	protected Mono<Boolean> deleteFile(Path file) {
+		return Mono.fromCallable(() -> Files.deleteIfExists(file))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	protected String extension(String photo) {
+		int dot = photo.lastIndexOf('.');
+		String extension = dot < 0 ? "" : photo.substring(dot).toLowerCase();
+		return extension.matches("\\.[a-z0-9]{1,10}") ? extension : "";
+	}
+
+	private Query byId(String blob) {
+		return new Query(Criteria.where("_id").is(blob));
+	}
+
+	private MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsCriteria;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsResource;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsUpload;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+
+@Component
+@ConditionalOnProperty(name = "config.uploads.storage", havingValue = "gridfs")
+public class GridFsPhotoStorage implements PhotoStorage {
+
+	private static final Logger logger = LoggerFactory.getLogger(GridFsPhotoStorage.class);
+
+	@Autowired
+	private ReactiveGridFsTemplate gridFsTemplate;
+
+	@Autowired
+	private PhotoVariants photoVariants;
+
+	@Value("${config.uploads.gridfs.chunk-size}")
+	private DataSize chunkSize;
+
+	@Value("${config.uploads.content-addressed}")
+	private boolean contentAddressed;
+
+	@PostConstruct
+	public void init() {
+		if (contentAddressed)
+			throw new IllegalStateException(
+					"config.uploads.content-addressed solo esta soportado con config.uploads.storage=filesystem");
+	}
+
+	@Override
+	public Mono<String> save(String photo, Flux<DataBuffer> content) {
+		return gridFsTemplate.store(upload(photo, content))
+				.thenReturn(photo)
+				.doOnNext(stored -> saveVariants(stored)
+						.subscribe(saved -> logger.info("Variantes generadas: " + stored),
+								error -> logger.warn("No se generaron las variantes de " + stored + ": " + error.getMessage())));
+	}
+
+	@Override
+	public Mono<Boolean> delete(String photo) {
+		return gridFsTemplate.findFirst(byFilename(photo))
+				.flatMap(file -> gridFsTemplate.delete(byFilename(photo))
+						.then(gridFsTemplate.delete(new Query(GridFsCriteria.whereFilename().in(Arrays.stream(PhotoSizeEnum.values())
+								.map(size -> variant(photo, size))
+								.collect(Collectors.toList())))))
+						.thenReturn(true))
+				.defaultIfEmpty(false);
+	}
+
+	@Override
+	public Mono<StoredPhoto> find(String photo) {
+		return find(photo, photo);
+	}
+
+	@Override
+	public Mono<StoredPhoto> findVariant(String photo, PhotoSizeEnum size) {
+		return find(variant(photo, size), photo);
+	}
+
+	// Variants are kept next to the original in GridFS, so every instance serves them without a shared disk
+	protected Mono<Void> saveVariants(String photo) {
+		return photoVariants.encode(photo, read(photo))
+				.flatMapIterable(Map::entrySet)
+				.concatMap(variant -> gridFsTemplate.delete(byFilename(variant(photo, variant.getKey())))
+						.then(gridFsTemplate.store(upload(variant(photo, variant.getKey()),
+								Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(variant.getValue()))))))
+				.then();
+	}
+
+	protected Flux<DataBuffer> read(String photo) {
+		return Flux.defer(() -> gridFsTemplate.getResource(photo))
+				.flatMap(ReactiveGridFsResource::getDownloadStream);
+	}
+
+	protected String variant(String photo, PhotoSizeEnum size) {
+		return PhotoVariants.VARIANTS_DIRECTORY + "/" + size.getSize() + "/" + photo;
+	}
+
+	// The stored photo keeps the name of the original so the media type is resolved from its extension
+	private Mono<StoredPhoto> find(String filename, String photo) {
+		return gridFsTemplate.findFirst(byFilename(filename))
+				.map(file -> new StoredPhoto(photo, file.getLength(), file.getUploadDate().getTime(),
+						Flux.defer(() -> gridFsTemplate.getResource(file))
+								.flatMap(ReactiveGridFsResource::getDownloadStream)));
+	}
+
+	private ReactiveGridFsUpload<ObjectId> upload(String filename, Flux<DataBuffer> content) {
+		return ReactiveGridFsUpload.fromPublisher(content)
+				.filename(filename)
+				.chunkSize((int) chunkSize.toBytes())
+				.build();
+	}
+
+	private Query byFilename(String photo) {
+		return new Query(GridFsCriteria.whereFilename().is(photo));
+	}
+}
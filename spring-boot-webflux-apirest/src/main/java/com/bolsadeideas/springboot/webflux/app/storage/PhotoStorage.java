@@ -0,0 +1,18 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+
+public interface PhotoStorage {
+
+	public Mono<String> save(String photo, Flux<DataBuffer> content);
+
+	public Mono<Boolean> delete(String photo);
+
+	public Mono<StoredPhoto> find(String photo);
+
+	public Mono<StoredPhoto> findVariant(String photo, PhotoSizeEnum size);
+}
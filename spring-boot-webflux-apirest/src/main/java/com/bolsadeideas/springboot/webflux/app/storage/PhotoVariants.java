@@ -0,0 +1,147 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.bolsadeideas.springboot.webflux.images.ImageUtils;
+
+@Component
+public class PhotoVariants {
+
+	static final String VARIANTS_DIRECTORY = "variants";
+
+	private static final Logger logger = LoggerFactory.getLogger(PhotoVariants.class);
+
+	@Value("${config.uploads.path}")
+	private String path;
+
+	@Value("${config.uploads.max-file-size}")
+	private DataSize maxFileSize;
+
+	@Value("${config.uploads.variants.threads}")
+	private int threads;
+
+	@Value("${config.uploads.variants.queue}")
+	private int queue;
+
+	@Value("${config.uploads.variants.max-pixels}")
+	private long maxPixels;
+
+	private Scheduler scheduler;
+
+	@PostConstruct
+	public void init() {
+		scheduler = Schedulers.newBoundedElastic(threads, queue, "photo-variants");
+	}
+
+	@PreDestroy
+	public void dispose() {
+		scheduler.dispose();
+	}
+
+	public void generate(String photo, Flux<DataBuffer> content) {
+		encode(photo, content)
+				.<Boolean>handle((variants, sink) -> {
+					try {
+						write(photo, variants);
+						sink.next(true);
+					} catch (IOException exception) {
+						sink.error(exception);
+					}
+				})
+				.subscribe(generated -> logger.info("Variantes generadas: " + photo),
+						error -> logger.warn("No se generaron las variantes de " + photo + ": " + error.getMessage()));
+	}
+
+	// Encodes every variant on the variants scheduler and leaves where to keep them to the caller
+	public Mono<Map<PhotoSizeEnum, byte[]>> encode(String photo, Flux<DataBuffer> content) {
+		return DataBufferUtils.join(content, (int) Math.min(Integer.MAX_VALUE, maxFileSize.toBytes()))
+				.publishOn(scheduler)
+				.<Map<PhotoSizeEnum, byte[]>>handle((buffer, sink) -> {
+					try (InputStream input = buffer.asInputStream(true)) {
+						sink.next(encode(photo, input));
+					} catch (IOException exception) {
+						sink.error(exception);
+					}
+				})
+				.doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+	}
+
+	public Mono<Void> delete(String photo) {
+		return Mono.fromCallable(() -> {
+			for (PhotoSizeEnum size : PhotoSizeEnum.values())
+				Files.deleteIfExists(resolve(photo, size));
+			return photo;
+		}).subscribeOn(Schedulers.boundedElastic()).then();
+	}
+
+	public Path find(String photo, PhotoSizeEnum size) {
+		Path variant = resolve(photo, size);
+		return variant.startsWith(getPath(size)) && Files.isRegularFile(variant) ? variant : null;
+	}
+
+	protected Map<PhotoSizeEnum, byte[]> encode(String photo, InputStream input) throws IOException {
+		String format = ImageUtils.format(photo);
+		BufferedImage image = format == null ? null : ImageUtils.read(input, maxPixels);
+		if (image == null)
+			throw new IOException("formato de imagen no soportado");
+
+		Map<PhotoSizeEnum, byte[]> variants = new EnumMap<>(PhotoSizeEnum.class);
+		for (PhotoSizeEnum size : PhotoSizeEnum.values()) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			ImageIO.write(ImageUtils.scale(image, size.getMaxDimension(), format), format, output);
+			variants.put(size, output.toByteArray());
+		}
+		return variants;
+	}
+
+	protected void write(String photo, Map<PhotoSizeEnum, byte[]> variants) throws IOException {
+		for (Map.Entry<PhotoSizeEnum, byte[]> variant : variants.entrySet()) {
+			Path file = resolve(photo, variant.getKey());
+			Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+			Files.createDirectories(file.getParent());
+			try {
+				Files.write(temp, variant.getValue());
+			} catch (IOException exception) {
+				Files.deleteIfExists(temp);
+				throw exception;
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	protected Path resolve(String photo, PhotoSizeEnum size) {
+		return getPath(size).resolve(photo).normalize();
+	}
+
+	protected Path getPath(PhotoSizeEnum size) {
+		return getPath().resolve(VARIANTS_DIRECTORY).resolve(size.getSize()).toAbsolutePath().normalize();
+	}
+
+	protected Path getPath() {
+		return Paths.get(path);
+	}
+}
@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+public class StoredPhoto {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String name;
+
+	private final long length;
+
+	private final long lastModified;
+
+	private final Resource file;
+
+	private final Flux<DataBuffer> content;
+
+	public StoredPhoto(String name, long length, long lastModified, Flux<DataBuffer> content) {
+		this(name, length, lastModified, null, content);
+	}
+
+	private StoredPhoto(String name, long length, long lastModified, Resource file, Flux<DataBuffer> content) {
+		this.name = name;
+		this.length = length;
+		this.lastModified = lastModified;
+		this.file = file;
+		this.content = content;
+	}
+
+	public static StoredPhoto of(Path file) throws IOException {
+		return new StoredPhoto(file.getFileName().toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+				new FileSystemResource(file), read(file));
+	}
+
+	public static Flux<DataBuffer> read(Path file) {
+		return DataBufferUtils.read(file, DefaultDataBufferFactory.sharedInstance, BUFFER_SIZE);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public Resource getFile() {
+		return file;
+	}
+
+	public Flux<DataBuffer> getContent() {
+		return content;
+	}
+}
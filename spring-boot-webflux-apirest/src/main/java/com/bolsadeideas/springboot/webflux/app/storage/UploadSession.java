@@ -0,0 +1,63 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.file.Path;
+
+public class UploadSession {
+
+	private final String id;
+
+	private final String productId;
+
+	private final String filename;
+
+	private final long length;
+
+	private final Path file;
+
+	private final long offset;
+
+	private final long lastAccess;
+
+	public UploadSession(String id, String productId, String filename, long length, Path file, long offset,
+			long lastAccess) {
+		this.id = id;
+		this.productId = productId;
+		this.filename = filename;
+		this.length = length;
+		this.file = file;
+		this.offset = offset;
+		this.lastAccess = lastAccess;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	public boolean isComplete() {
+		return offset == length;
+	}
+}
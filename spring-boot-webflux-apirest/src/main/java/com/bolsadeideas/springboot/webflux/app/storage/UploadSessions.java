@@ -0,0 +1,276 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+@Component
+public class UploadSessions {
+
+	private static final Logger logger = LoggerFactory.getLogger(UploadSessions.class);
+
+	private static final String SESSIONS_COLLECTION = "subidas";
+
+	@Autowired
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@Autowired
+	private UploadValidator uploadValidator;
+
+	@Value("${config.uploads.sessions.path}")
+	private String path;
+
+	@Value("${config.uploads.sessions.idle-timeout}")
+	private Duration idleTimeout;
+
+	@Value("${config.uploads.sessions.cleanup-interval}")
+	private Duration cleanupInterval;
+
+	private Disposable cleanup;
+
+	@PostConstruct
+	public void init() {
+		cleanup = Flux.interval(cleanupInterval, Schedulers.boundedElastic())
+				.concatMap(tick -> expire()
+						.filter(expired -> expired > 0)
+						.doOnNext(expired -> logger.info("Subidas inactivas eliminadas: " + expired))
+						.onErrorResume(error -> {
+							logger.warn("No se eliminaron las subidas inactivas: " + error.getMessage());
+							return Mono.empty();
+						}))
+				.subscribe();
+	}
+
+	@PreDestroy
+	public void dispose() {
+		cleanup.dispose();
+	}
+
+	public Mono<UploadSession> create(String productId, String filename, long length) {
+		return Mono.fromCallable(() -> {
+			uploadValidator.checkSize(length);
+			String id = UUID.randomUUID().toString();
+			Files.createFile(Files.createDirectories(getPath()).resolve(id));
+			return new Document("_id", id)
+					.append("productId", productId)
+					.append("filename", filename)
+					.append("length", length)
+					.append("offset", 0L)
+					.append("lastAccess", new Date())
+					.append("lockedUntil", new Date(0));
+		}).subscribeOn(Schedulers.boundedElastic())
+				.flatMap(session -> mongoTemplate.insert(session, SESSIONS_COLLECTION)
+						.onErrorResume(error -> deleteFile(session.getString("_id")).then(Mono.error(error))))
+				.map(this::toSession);
+	}
+
+	public Mono<UploadSession> find(String id) {
+		return mongoTemplate.findAndModify(byId(id), new Update().set("lastAccess", new Date()),
+				FindAndModifyOptions.options().returnNew(true), Document.class, SESSIONS_COLLECTION)
+				.map(this::toSession);
+	}
+
+	public Mono<UploadSession> append(String id, long offset, Flux<DataBuffer> content) {
+		return lock(id).flatMap(session -> {
+			if (offset != session.getOffset())
+				return unlock(session.getId(), session.getOffset()).then(Mono.error(new ResponseStatusException(
+						HttpStatus.CONFLICT, "El offset de la subida es " + session.getOffset())));
+
+			AtomicLong position = new AtomicLong(session.getOffset());
+			return Flux.using(() -> FileChannel.open(session.getFile(), StandardOpenOption.WRITE),
+					channel -> content.publishOn(Schedulers.boundedElastic())
+							.<Long>handle((buffer, sink) -> write(session, position, channel, buffer, sink)),
+					this::close)
+					.subscribeOn(Schedulers.boundedElastic())
+					.doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+					.then()
+					// Unlocked before the result is emitted, a client may send the next request as soon as it gets it
+					.onErrorResume(error -> unlock(id, position.get()).then(Mono.error(error)))
+					.then(Mono.defer(() -> unlock(id, position.get())))
+					.doOnCancel(() -> unlock(id, position.get()).subscribe());
+		});
+	}
+
+	public <T> Mono<T> complete(String id, Function<UploadSession, Mono<T>> finisher) {
+		return lock(id).flatMap(session -> {
+			if (!session.isComplete())
+				return unlock(session.getId(), session.getOffset()).then(Mono.error(new ResponseStatusException(
+						HttpStatus.CONFLICT, "Faltan " + (session.getLength() - session.getOffset()) + " bytes por recibir")));
+
+			return Mono.defer(() -> finisher.apply(session))
+					.flatMap(result -> remove(id).thenReturn(result))
+					.switchIfEmpty(Mono.defer(() -> remove(id).then(Mono.empty())))
+					.onErrorResume(ResponseStatusException.class, exception -> remove(id).then(Mono.error(exception)))
+					.onErrorResume(error -> !(error instanceof ResponseStatusException),
+							error -> unlock(id, session.getOffset()).then(Mono.error(error)))
+					.doOnCancel(() -> unlock(id, session.getOffset()).subscribe());
+		});
+	}
+
+	public Mono<Boolean> delete(String id) {
+		return remove(id);
+	}
+
+	protected Mono<Long> expire() {
+		Date deadline = new Date(System.currentTimeMillis() - idleTimeout.toMillis());
+		Query expired = new Query(Criteria.where("lastAccess").lt(deadline).and("lockedUntil").lt(new Date()));
+		return mongoTemplate.find(expired, Document.class, SESSIONS_COLLECTION)
+				.concatMap(session -> mongoTemplate.remove(new Query(Criteria.where("_id").is(session.get("_id"))
+						.and("lastAccess").lt(deadline).and("lockedUntil").lt(new Date())), SESSIONS_COLLECTION)
+						.filter(result -> result.getDeletedCount() > 0)
+						.flatMap(result -> deleteFile(session.getString("_id"))))
+				.count()
+				.flatMap(count -> deleteOrphans(deadline.getTime()).map(orphans -> count + orphans));
+	}
+
+	// Partial files left by sessions that no longer exist, e.g. after a failed insert or a crash while deleting
+	protected Mono<Long> deleteOrphans(long deadline) {
+		return Mono.fromCallable(() -> {
+			if (!Files.isDirectory(getPath()))
+				return Collections.<String>emptyList();
+
+			try (Stream<Path> files = Files.list(getPath())) {
+				return files.filter(file -> lastModified(file) < deadline)
+						.map(file -> file.getFileName().toString())
+						.collect(Collectors.toList());
+			}
+		}).subscribeOn(Schedulers.boundedElastic())
+				.filter(names -> !names.isEmpty())
+				.flatMap(names -> mongoTemplate.find(new Query(Criteria.where("_id").in(names)), Document.class,
+						SESSIONS_COLLECTION)
+						.map(session -> session.getString("_id"))
+						.collect(Collectors.toSet())
+						.flatMap(sessions -> Mono.fromCallable(() -> names.stream()
+								.filter(name -> !sessions.contains(name))
+								.filter(name -> deleteQuietly(getPath().resolve(name)))
+								.count())
+								.subscribeOn(Schedulers.boundedElastic())))
+				.defaultIfEmpty(0L);
+	}
+
+	// Only one request at a time may write to or complete a session, across every instance sharing the sessions
+	// directory. The lock is a lease, a session left locked by an instance that stopped is taken over once it runs out
+	protected Mono<UploadSession> lock(String id) {
+		Date now = new Date();
+		return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id).and("lockedUntil").lt(now)),
+				new Update().set("lockedUntil", new Date(now.getTime() + idleTimeout.toMillis())).set("lastAccess", now),
+				FindAndModifyOptions.options().returnNew(true), Document.class, SESSIONS_COLLECTION)
+				.map(this::toSession)
+				.switchIfEmpty(Mono.defer(() -> mongoTemplate.exists(byId(id), SESSIONS_COLLECTION)
+						.flatMap(exists -> exists ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+								"La subida ya esta recibiendo datos")) : Mono.empty())));
+	}
+
+	protected Mono<UploadSession> unlock(String id, long offset) {
+		return mongoTemplate.findAndModify(byId(id), new Update().set("offset", offset).set("lockedUntil", new Date(0))
+				.set("lastAccess", new Date()), FindAndModifyOptions.options().returnNew(true), Document.class,
+				SESSIONS_COLLECTION)
+				.map(this::toSession);
+	}
+
+	protected Mono<Boolean> remove(String id) {
+		return mongoTemplate.remove(byId(id), SESSIONS_COLLECTION)
+				.flatMap(result -> result.getDeletedCount() > 0 ? deleteFile(id) : Mono.just(false));
+	}
+
+	protected Mono<Boolean> deleteFile(String id) {
+		return Mono.fromCallable(() -> Files.deleteIfExists(getPath().resolve(id)))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	protected Path getPath() {
+		return Paths.get(path);
+	}
+
+	private UploadSession toSession(Document session) {
+		String id = session.getString("_id");
+		return new UploadSession(id, session.getString("productId"), session.getString("filename"),
+				session.get("length", Number.class).longValue(), getPath().resolve(id),
+				session.get("offset", Number.class).longValue(), session.getDate("lastAccess").getTime());
+	}
+
+	private Query byId(String id) {
+		return new Query(Criteria.where("_id").is(id));
+	}
+
+	private void write(UploadSession session, AtomicLong offset, FileChannel channel, DataBuffer buffer,
+			SynchronousSink<Long> sink) {
+		try {
+			long position = offset.get();
+			if (position + buffer.readableByteCount() > session.getLength()) {
+				sink.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+						"La subida supera el tamano declarado de " + session.getLength() + "B"));
+				return;
+			}
+
+			ByteBuffer source = buffer.asByteBuffer();
+			while (source.hasRemaining())
+				position += channel.write(source, position);
+			offset.set(position);
+			sink.next(position);
+		} catch (IOException exception) {
+			sink.error(exception);
+		} finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	private void close(FileChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException exception) {
+			logger.warn("No se cerro el archivo de la subida: " + exception.getMessage());
+		}
+	}
+
+	private long lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException exception) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	private boolean deleteQuietly(Path file) {
+		try {
+			return Files.deleteIfExists(file);
+		} catch (IOException exception) {
+			logger.warn("No se elimino el archivo de subida " + file + ": " + exception.getMessage());
+			return false;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.UnsupportedMediaTypeStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Component
+public class UploadValidator {
+
+	private static final int SNIFF_LENGTH = 12;
+
+	private static final List<byte[]> IMAGE_SIGNATURES = List.of(
+			new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF },
+			new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' },
+			"GIF87a".getBytes(StandardCharsets.US_ASCII),
+			"GIF89a".getBytes(StandardCharsets.US_ASCII),
+			"BM".getBytes(StandardCharsets.US_ASCII));
+
+	@Value("${config.uploads.max-file-size}")
+	private DataSize maxFileSize;
+
+	@Value("${config.uploads.max-request-size}")
+	private DataSize maxRequestSize;
+
+	public ServerHttpRequest limit(ServerHttpRequest request) {
+		String message = "La peticion supera el tamano maximo de " + maxRequestSize;
+		Flux<DataBuffer> body = request.getHeaders().getContentLength() > maxRequestSize.toBytes()
+				? Flux.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, message))
+				: limit(request.getBody(), maxRequestSize.toBytes(), message);
+		return new ServerHttpRequestDecorator(request) {
+			@Override
+			public Flux<DataBuffer> getBody() {
+				return body;
+			}
+		};
+	}
+
+	public void checkSize(long length) {
+		if (length < 0)
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tamano del archivo no es valido");
+		if (length > maxFileSize.toBytes())
+			throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+					"El archivo supera el tamano maximo de " + maxFileSize);
+	}
+
+	public Flux<DataBuffer> validate(Flux<DataBuffer> content) {
+		return sniff(limit(content, maxFileSize.toBytes(), "El archivo supera el tamano maximo de " + maxFileSize));
+	}
+
+	protected Flux<DataBuffer> limit(Flux<DataBuffer> content, long maxBytes, String message) {
+		return Flux.defer(() -> {
+			long[] total = { 0 };
+			return content.handle((buffer, sink) -> {
+				total[0] += buffer.readableByteCount();
+				if (total[0] > maxBytes) {
+					DataBufferUtils.release(buffer);
+					sink.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, message));
+					return;
+				}
+				sink.next(buffer);
+			});
+		});
+	}
+
+	protected Flux<DataBuffer> sniff(Flux<DataBuffer> content) {
+		return Flux.defer(() -> {
+			ByteArrayOutputStream head = new ByteArrayOutputStream(SNIFF_LENGTH);
+			return content.<DataBuffer>handle((buffer, sink) -> {
+				if (head.size() < SNIFF_LENGTH) {
+					int count = Math.min(SNIFF_LENGTH - head.size(), buffer.readableByteCount());
+					for (int i = 0; i < count; i++)
+						head.write(buffer.getByte(buffer.readPosition() + i));
+					if (head.size() == SNIFF_LENGTH && !isImage(head.toByteArray())) {
+						DataBufferUtils.release(buffer);
+						sink.error(new UnsupportedMediaTypeStatusException("El archivo no es una imagen soportada"));
+						return;
+					}
+				}
+				sink.next(buffer);
+			}).concatWith(Mono.defer(() -> head.size() < SNIFF_LENGTH && !isImage(head.toByteArray())
+					? Mono.error(new UnsupportedMediaTypeStatusException("El archivo no es una imagen soportada"))
+					: Mono.empty()));
+		});
+	}
+
+	protected boolean isImage(byte[] head) {
+		if (head.length >= SNIFF_LENGTH && startsWith(head, "RIFF".getBytes(StandardCharsets.US_ASCII))
+				&& Arrays.equals(head, 8, 12, "WEBP".getBytes(StandardCharsets.US_ASCII), 0, 4))
+			return true;
+
+		return IMAGE_SIGNATURES.stream().anyMatch(signature -> startsWith(head, signature));
+	}
+
+	private boolean startsWith(byte[] head, byte[] signature) {
+		return head.length >= signature.length && Arrays.equals(head, 0, signature.length, signature, 0, signature.length);
+	}
+}
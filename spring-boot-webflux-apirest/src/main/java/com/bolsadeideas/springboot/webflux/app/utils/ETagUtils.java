@@ -0,0 +1,80 @@
+package com.bolsadeideas.springboot.webflux.app.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.storage.StoredPhoto;
+
+public final class ETagUtils {
+
+	private ETagUtils() {
+	}
+
+	public static String of(Product product, Set<ProductFieldEnum> fields) {
+		StringBuilder eTag = new StringBuilder("\"").append(product.getId()).append('-').append(product.getVersion());
+		if (!fields.isEmpty())
+			eTag.append(';').append(fields.stream().map(ProductFieldEnum::getField).collect(Collectors.joining(",")));
+		return eTag.append('"').toString();
+	}
+
+	public static String of(String catalogVersion) {
+		return "\"" + catalogVersion + "\"";
+	}
+
+	public static String of(StoredPhoto photo) {
+		return "\"" + Long.toHexString(photo.getLength()) + "-" + Long.toHexString(photo.getLastModified()) + "\"";
+	}
+
+	public static boolean matches(List<String> ifNoneMatch, String eTag) {
+		return ifNoneMatch.stream()
+				.flatMap(header -> parse(header).stream())
+				.anyMatch(tag -> tag.equals(eTag) || tag.equals("*"));
+	}
+
+	// A list of quoted entity-tags, the field tags carry commas inside the quotes so the header is not split on them
+	protected static List<String> parse(String header) {
+		List<String> tags = new ArrayList<>();
+		int index = 0;
+		while (index < header.length()) {
+			char current = header.charAt(index);
+			if (current == ',' || Character.isWhitespace(current)) {
+				index++;
+			} else if (current == '*') {
+				tags.add("*");
+				index++;
+			} else {
+				int start = header.startsWith("W/", index) ? index + 2 : index;
+				int end = start < header.length() && header.charAt(start) == '"' ? header.indexOf('"', start + 1) : -1;
+				if (end < 0) {
+					int next = header.indexOf(',', index);
+					index = next < 0 ? header.length() : next + 1;
+				} else {
+					tags.add(header.substring(start, end + 1));
+					index = end + 1;
+				}
+			}
+		}
+		return tags;
+	}
+
+	public static Long parseVersion(String ifMatch, String id) {
+		if (ifMatch == null || ifMatch.trim().equals("*"))
+			return null;
+
+		String tag = ifMatch.trim();
+		int end = tag.indexOf(';') > 0 ? tag.indexOf(';') : tag.length() - 1;
+		if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")
+				|| !tag.substring(1, end).startsWith(id + "-"))
+			throw new IllegalArgumentException("Invalid If-Match: " + ifMatch);
+
+		try {
+			return Long.valueOf(tag.substring(id.length() + 2, end));
+		} catch (NumberFormatException exception) {
+			throw new IllegalArgumentException("Invalid If-Match: " + ifMatch);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.bolsadeideas.springboot.webflux.app;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+public class ExplainGuard implements CommandListener {
+
+	private static final Set<String> QUERY_COMMANDS = Set.of("find", "count", "distinct");
+
+	private static final List<String> QUERY_KEYS = List.of("filter", "query", "sort");
+
+	private final Queue<BsonDocument> queries = new ConcurrentLinkedQueue<>();
+
+	@Override
+	public void commandStarted(CommandStartedEvent event) {
+		if (QUERY_COMMANDS.contains(event.getCommandName()))
+			queries.add(event.getCommand().clone());
+	}
+
+	public void reset() {
+		queries.clear();
+	}
+
+	public void assertNoCollectionScan(ReactiveMongoTemplate mongoTemplate) {
+		List<String> scans = Flux.fromIterable(queries)
+				.filter(this::isSelective)
+				.concatMap(query -> mongoTemplate.executeCommand(toExplain(query))
+						.filter(explain -> hasStage(explain.get("queryPlanner", Document.class).get("winningPlan"),
+								"COLLSCAN"))
+						.map(explain -> query.toJson()))
+				.collectList()
+				.block();
+
+		if (!scans.isEmpty())
+			throw new AssertionError("Queries resolved with a COLLSCAN: " + scans);
+	}
+
+	private boolean isSelective(BsonDocument query) {
+		return QUERY_KEYS.stream().anyMatch(key -> query.isDocument(key) && !query.getDocument(key).isEmpty());
+	}
+
+	private Document toExplain(BsonDocument query) {
+		Document command = new Document();
+		Document.parse(query.toJson()).forEach((key, value) -> {
+			if (!key.startsWith("$") && !"lsid".equals(key) && !"txnNumber".equals(key))
+				command.append(key, value);
+		});
+		return new Document("explain", command).append("verbosity", "queryPlanner");
+	}
+
+	private boolean hasStage(Object plan, String stage) {
+		if (plan instanceof Map) {
+			Map<?, ?> node = (Map<?, ?>) plan;
+			return stage.equals(node.get("stage")) || node.values().stream().anyMatch(value -> hasStage(value, stage));
+		}
+		if (plan instanceof Collection)
+			return ((Collection<?>) plan).stream().anyMatch(value -> hasStage(value, stage));
+
+		return false;
+	}
+}
@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.app;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import com.bolsadeideas.springboot.webflux.app.models.dao.ICategoryDao;
+import com.bolsadeideas.springboot.webflux.app.models.dao.IProductDao;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+class RepositoryIndexesTests {
+
+	@Autowired
+	private SpringBootWebfluxApirestApplication application;
+
+	@Autowired
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@Autowired
+	private ExplainGuard explainGuard;
+
+	@Autowired
+	private IProductDao productDao;
+
+	@Autowired
+	private ICategoryDao categoryDao;
+
+	@BeforeEach
+	void init() {
+		application.ensureIndexes().blockLast();
+		explainGuard.reset();
+	}
+
+	@Test
+	public void productDaoQueriesMustNotScanCollectionTest() {
+		productDao.findByName("Sony Notebook").block();
+		productDao.getByName("Sony Notebook").block();
+
+		explainGuard.assertNoCollectionScan(mongoTemplate);
+	}
+
+	@Test
+	public void categoryDaoQueriesMustNotScanCollectionTest() {
+		categoryDao.findByName("Muebles").block();
+
+		explainGuard.assertNoCollectionScan(mongoTemplate);
+	}
+
+	@TestConfiguration
+	static class ExplainGuardConfig {
+
+		@Bean
+		public ExplainGuard explainGuard() {
+			return new ExplainGuard();
+		}
+
+		@Bean
+		public MongoClientSettingsBuilderCustomizer explainGuardCustomizer(ExplainGuard explainGuard) {
+			return settings -> settings.addCommandListener(explainGuard);
+		}
+	}
+}
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -19,6 +20,7 @@ import reactor.core.publisher.Mono;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
 import com.bolsadeideas.springboot.webflux.app.models.services.ProductService;
+import com.bolsadeideas.springboot.webflux.app.utils.ETagUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @AutoConfigureWebTestClient
@@ -139,6 +141,7 @@ class SpringBootWebfluxApirestApplicationTests {
 		.uri(url + "/{id}", Collections.singletonMap("id", product.getId()))
 		.contentType(MediaType.APPLICATION_JSON)
 		.accept(MediaType.APPLICATION_JSON)
+		.header(HttpHeaders.IF_MATCH, ETagUtils.of(product, Collections.emptySet()))
 		.body(Mono.just(productEdit), Product.class)
 		.exchange()
 		.expectStatus().isCreated()
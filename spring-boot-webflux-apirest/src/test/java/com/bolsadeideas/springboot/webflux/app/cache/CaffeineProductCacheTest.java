@@ -0,0 +1,137 @@
+package com.bolsadeideas.springboot.webflux.app.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CaffeineProductCacheTest {
+
+	private CaffeineProductCache productCache;
+	private MeterRegistry registry;
+	private AtomicInteger loads;
+
+	@BeforeEach
+	void init() {
+		registry = new SimpleMeterRegistry();
+		productCache = new CaffeineProductCache(1, Duration.ofMinutes(1), registry);
+		loads = new AtomicInteger();
+	}
+
+	@Test
+	public void getWhenProductIsCachedThenMustNotInvokeLoaderAgainTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+
+		StepVerifier.create(productCache.get("id", id -> load(product)))
+			.expectNextMatches(cached -> cached != product && product.getName().equals(cached.getName()))
+			.expectComplete()
+			.verify();
+		StepVerifier.create(productCache.get("id", id -> load(product)))
+			.expectNextMatches(cached -> cached != product && product.getName().equals(cached.getName()))
+			.expectComplete()
+			.verify();
+
+		assertEquals(1, loads.get());
+		assertEquals(1d, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+		assertEquals(1d, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+	}
+
+	@Test
+	public void getWhenReturnedProductIsMutatedThenMustNotChangeTheCachedProductTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+		product.setPhoto("foto.jpg");
+		productCache.get("id", id -> load(product)).block().setPhoto("otra.jpg");
+
+		StepVerifier.create(productCache.get("id", id -> load(product)))
+			.expectNextMatches(cached -> "foto.jpg".equals(cached.getPhoto()))
+			.expectComplete()
+			.verify();
+
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void getWhenOneSubscriberCancelsThenOtherSubscribersMustStillReceiveTheProductTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+		Sinks.One<Product> loaded = Sinks.one();
+		Function<String, Mono<Product>> loader = id -> {
+			loads.incrementAndGet();
+			return loaded.asMono();
+		};
+		Disposable cancelled = productCache.get("id", loader).subscribe();
+
+		StepVerifier.create(productCache.get("id", loader))
+			.then(cancelled::dispose)
+			.then(() -> loaded.tryEmitValue(product))
+			.expectNextMatches(cached -> product.getName().equals(cached.getName()))
+			.expectComplete()
+			.verify();
+
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void getWhenLoaderReturnEmptyThenMustReturnEmptyAndNotCacheItTest() {
+
+		StepVerifier.create(productCache.get("id", id -> load(null)))
+			.expectComplete()
+			.verify();
+		StepVerifier.create(productCache.get("id", id -> load(null)))
+			.expectComplete()
+			.verify();
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evictWhenProductIsCachedThenMustInvokeLoaderOnNextGetTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+		productCache.get("id", id -> load(product)).block();
+
+		StepVerifier.create(productCache.evict("id").then(productCache.get("id", id -> load(product))))
+			.expectNextMatches(cached -> cached != product && product.getName().equals(cached.getName()))
+			.expectComplete()
+			.verify();
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evictWhenIdIsNullThenMustCompleteTest() {
+
+		StepVerifier.create(productCache.evict(null))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void evictAllWhenProductsAreCachedThenMustInvokeLoaderOnNextGetTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+		productCache.get("id", id -> load(product)).block();
+
+		StepVerifier.create(productCache.evictAll().then(productCache.get("id", id -> load(product))))
+			.expectNextMatches(cached -> cached != product && product.getName().equals(cached.getName()))
+			.expectComplete()
+			.verify();
+
+		assertEquals(2, loads.get());
+	}
+
+	private Mono<Product> load(Product product) {
+		return Mono.fromSupplier(() -> {
+			loads.incrementAndGet();
+			return product;
+		});
+	}
+}
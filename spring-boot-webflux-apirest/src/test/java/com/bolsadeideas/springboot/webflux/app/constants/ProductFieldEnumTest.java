@@ -0,0 +1,53 @@
+package com.bolsadeideas.springboot.webflux.app.constants;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProductFieldEnumTest {
+
+	@Test
+	void fromFieldsWhenFieldsIsNullMustReturnEmptySetTest() {
+
+		Set<ProductFieldEnum> fields = ProductFieldEnum.fromFields(null);
+
+		assertTrue(fields.isEmpty());
+	}
+
+	@Test
+	void fromFieldsWhenFieldsHasSpacesAndEmptyItemsMustReturnKnownFieldsTest() {
+
+		Set<ProductFieldEnum> fields = ProductFieldEnum.fromFields(" name, ,id,price ");
+
+		assertEquals(EnumSet.of(ProductFieldEnum.ID, ProductFieldEnum.NAME, ProductFieldEnum.PRICE), fields);
+	}
+
+	@Test
+	void fromFieldsWhenFieldIsUnknownMustThrowIllegalArgumentExceptionTest() {
+
+		assertThrows(IllegalArgumentException.class, () -> ProductFieldEnum.fromFields("id,nombre"));
+	}
+
+	@Test
+	void toMapWhenFieldsAreRequestedMustReturnOnlyThatFieldsInEnumOrderTest() {
+		Product product = new Product("Sony Notebook", 846.89, new Category("Computación"));
+		product.setId("id");
+
+		Map<String, Object> map = ProductFieldEnum.toMap(product,
+				EnumSet.of(ProductFieldEnum.PRICE, ProductFieldEnum.ID, ProductFieldEnum.NAME));
+
+		assertEquals(List.of("id", "name", "price"), List.copyOf(map.keySet()));
+		assertEquals("id", map.get("id"));
+		assertEquals("Sony Notebook", map.get("name"));
+		assertEquals(846.89, map.get("price"));
+	}
+}
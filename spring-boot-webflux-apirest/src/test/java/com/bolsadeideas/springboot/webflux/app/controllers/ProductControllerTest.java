@@ -7,25 +7,42 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.UnsupportedMediaTypeStatusException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
-import java.io.File;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
 
+import com.bolsadeideas.springboot.webflux.app.cache.CaffeineProductCache;
+import com.bolsadeideas.springboot.webflux.app.cache.ProductCache;
+import com.bolsadeideas.springboot.webflux.app.constants.HeaderEnum;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductPage;
 import com.bolsadeideas.springboot.webflux.app.models.services.ProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSession;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadSessions;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadValidator;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
@@ -39,6 +56,12 @@ public class ProductControllerTest {
 	private Product productSpy;
 	@Mock
 	private ProductService productService;
+	@Mock
+	private PhotoStorage photoStorage;
+	@Mock
+	private UploadValidator uploadValidator;
+	@Mock
+	private UploadSessions uploadSessions;
 
 	@BeforeEach
 	void init() {
@@ -53,7 +76,8 @@ public class ProductControllerTest {
 		FilePart file = Mockito.mock(FilePart.class);
 		doReturn(filename).when(file).filename();
 		doNothing().when(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		doReturn(Mono.empty()).when(file).transferTo(Mockito.any(File.class));
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.just("photo")).when(photoStorage).save(Mockito.any(), Mockito.any());
 		doReturn(Mono.just(productSpy)).when(productService).save(productSpy);
 		doReturn("id").when(productSpy).getId();
 
@@ -65,10 +89,43 @@ public class ProductControllerTest {
 		assertNotNull(productSpy.getCreateAt());
 		verify(file).filename();
 		verify(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		verify(file).transferTo(Mockito.any(File.class));
+		verify(photoStorage).save(Mockito.any(), Mockito.any());
 		verify(productService).save(productSpy);
 	}
 
+	@Test
+	public void createWithPhotoWhenUploadIsRejectedMustReturnItsStatusWithoutSavingProductTest() {
+		FilePart file = Mockito.mock(FilePart.class);
+		doReturn("filename").when(file).filename();
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.error(new UnsupportedMediaTypeStatusException("El archivo no es una imagen soportada")))
+				.when(photoStorage).save(Mockito.any(), Mockito.any());
+
+		StepVerifier.create(productController.createWithPhoto(productSpy, file))
+			.expectNextMatches(response -> HttpStatus.UNSUPPORTED_MEDIA_TYPE.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(uploadValidator).validate(Mockito.any());
+		verify(productService, Mockito.never()).save(Mockito.any());
+	}
+
+	@Test
+	public void createWithPhotoWhenSavingProductFailsMustReleaseTheStoredPhotoAndPropagateErrorTest() {
+		FilePart file = Mockito.mock(FilePart.class);
+		doReturn("filename").when(file).filename();
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.just("photo")).when(photoStorage).save(Mockito.any(), Mockito.any());
+		doReturn(Mono.just(true)).when(photoStorage).delete("photo");
+		doReturn(Mono.error(new IllegalStateException("broken"))).when(productService).save(productSpy);
+
+		StepVerifier.create(productController.createWithPhoto(productSpy, file))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		verify(photoStorage).delete("photo");
+	}
+
 	@Test
 	public void createWithPhotoWhenProductCreateAtIsNotNullMustNotSetItAndReturnResponseEntityOfProductPersistedTest() {
 		Date createAt = new Date();
@@ -77,7 +134,8 @@ public class ProductControllerTest {
 		doReturn(createAt).when(productSpy).getCreateAt();
 		doReturn(filename).when(file).filename();
 		doNothing().when(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		doReturn(Mono.empty()).when(file).transferTo(Mockito.any(File.class));
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.just("photo")).when(photoStorage).save(Mockito.any(), Mockito.any());
 		doReturn(Mono.just(productSpy)).when(productService).save(productSpy);
 		doReturn("id").when(productSpy).getId();
 
@@ -89,7 +147,7 @@ public class ProductControllerTest {
 		assertEquals(createAt, productSpy.getCreateAt());
 		verify(file).filename();
 		verify(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		verify(file).transferTo(Mockito.any(File.class));
+		verify(photoStorage).save(Mockito.any(), Mockito.any());
 		verify(productService).save(productSpy);
 	}
 
@@ -101,7 +159,8 @@ public class ProductControllerTest {
 		doReturn(Mono.just(productSpy)).when(productService).findById(id);
 		doReturn(filename).when(file).filename();
 		doNothing().when(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		doReturn(Mono.empty()).when(file).transferTo(Mockito.any(File.class));
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.just("photo")).when(photoStorage).save(Mockito.any(), Mockito.any());
 		doReturn(Mono.just(productSpy)).when(productService).save(productSpy);
 
 		StepVerifier.create(productController.upload(id, file))
@@ -112,10 +171,35 @@ public class ProductControllerTest {
 		verify(productService).findById(id);
 		verify(file).filename();
 		verify(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq(filename));
-		verify(file).transferTo(Mockito.any(File.class));
+		verify(photoStorage).save(Mockito.any(), Mockito.any());
 		verify(productService).save(productSpy);
 	}
 
+	@Test
+	public void uploadWhenPhotoStorageFailsThenFindByIdMustStillReturnThePreviousPhotoTest() {
+		ProductCache productCache = new CaffeineProductCache(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+		Product stored = new Product("TV Panasonic", 450.0);
+		stored.setId("id");
+		stored.setPhoto("anterior.jpg");
+		FilePart file = Mockito.mock(FilePart.class);
+		doAnswer(invocation -> productCache.get("id", id -> Mono.just(stored))).when(productService).findById("id");
+		doReturn("nueva.jpg").when(file).filename();
+		doReturn(Flux.empty()).when(file).content();
+		doReturn(Mono.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE)))
+				.when(photoStorage).save(Mockito.any(), Mockito.any());
+
+		StepVerifier.create(productController.upload("id", file))
+			.expectNextMatches(response -> HttpStatus.PAYLOAD_TOO_LARGE.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+		StepVerifier.create(productService.findById("id"))
+			.expectNextMatches(product -> "anterior.jpg".equals(product.getPhoto()))
+			.expectComplete()
+			.verify();
+
+		verify(productService, Mockito.never()).save(Mockito.any());
+	}
+
 	@Test
 	public void uploadWhenFindByIdReturnMonoEmptyThenMustReturnResponseEntityNotFoundTest() {
 		String id = "id";
@@ -131,16 +215,89 @@ public class ProductControllerTest {
 		verify(file, Mockito.never()).filename();
 		verify(productSpy, Mockito.never()).setPhotoWithFormattedName(Mockito.anyString(),
 				Mockito.anyString());
-		verify(file, Mockito.never()).transferTo(Mockito.any(File.class));
+		verify(photoStorage, Mockito.never()).save(Mockito.any(), Mockito.any());
 		verify(productService, Mockito.never()).save(Mockito.any());
 	}
 
+	@Test
+	public void createUploadSessionWhenProductExistsMustReturnCreatedWithOffsetAndLengthHeadersTest() {
+		UploadSession session = new UploadSession("session", "id", "filename", 100, Paths.get("session"), 0, 0);
+		doReturn("id").when(productSpy).getId();
+		doReturn(Mono.just(productSpy)).when(productService).findById("id");
+		doReturn(Mono.just(session)).when(uploadSessions).create("id", "filename", 100);
+
+		StepVerifier.create(productController.createUploadSession("id", "filename", 100))
+			.expectNextMatches(response -> HttpStatus.CREATED.equals(response.getStatusCode())
+					&& "/api/productos/upload/session/session".equals(response.getHeaders().getLocation().toString())
+					&& "0".equals(response.getHeaders().getFirst(HeaderEnum.UPLOAD_OFFSET.getHeader()))
+					&& "100".equals(response.getHeaders().getFirst(HeaderEnum.UPLOAD_LENGTH.getHeader())))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void createUploadSessionWhenProductDoesNotExistMustReturnNotFoundWithoutCreatingSessionTest() {
+		doReturn(Mono.empty()).when(productService).findById("id");
+
+		StepVerifier.create(productController.createUploadSession("id", "filename", 100))
+			.expectNextMatches(response -> HttpStatus.NOT_FOUND.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(uploadSessions, Mockito.never()).create(Mockito.any(), Mockito.any(), Mockito.anyLong());
+	}
+
+	@Test
+	public void appendUploadSessionWhenOffsetDoesNotMatchMustReturnConflictTest() {
+		Flux<DataBuffer> content = Flux.empty();
+		doReturn(Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "El offset de la subida es 0")))
+				.when(uploadSessions).append("session", 10, content);
+
+		StepVerifier.create(productController.appendUploadSession("session", 10, content))
+			.expectNextMatches(response -> HttpStatus.CONFLICT.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void completeUploadSessionWhenAllBytesArrivedMustReplacePhotoAndDeletePreviousTest() {
+		UploadSession session = new UploadSession("session", "id", "filename", 0, Paths.get("session"), 0, 0);
+		doReturn("previous").when(productSpy).getPhoto();
+		doNothing().when(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq("filename"));
+		doReturn(Mono.just(productSpy)).when(productService).findById("id");
+		doReturn(Mono.just("photo")).when(photoStorage).save(Mockito.any(), Mockito.any());
+		doReturn(Mono.just(true)).when(photoStorage).delete("previous");
+		doReturn(Mono.just(productSpy)).when(productService).save(productSpy);
+		Mockito.doAnswer(invocation -> invocation.<Function<UploadSession, Mono<?>>>getArgument(1).apply(session))
+				.when(uploadSessions).complete(Mockito.eq("session"), Mockito.any());
+
+		StepVerifier.create(productController.completeUploadSession("session"))
+			.expectNextMatches(response -> productSpy.equals(response.getBody()))
+			.expectComplete()
+			.verify();
+
+		verify(productSpy).setPhotoWithFormattedName(Mockito.anyString(), Mockito.eq("filename"));
+		verify(uploadValidator).validate(Mockito.any());
+		verify(productService).save(productSpy);
+		verify(photoStorage).delete("previous");
+	}
+
+	@Test
+	public void deleteUploadSessionWhenSessionDoesNotExistMustReturnNotFoundTest() {
+		doReturn(Mono.just(false)).when(uploadSessions).delete("session");
+
+		StepVerifier.create(productController.deleteUploadSession("session"))
+			.expectNextMatches(response -> HttpStatus.NOT_FOUND.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+	}
+
 	@Test
 	public void listWhenFindAllReturnEmptyProductThenMustReturnResponseEntityFluxEmptyTest() {
 		Flux<Product> products = Flux.empty();
 		doReturn(products).when(productService).findAll();
 
-		StepVerifier.create(productController.list())
+		StepVerifier.create(productController.list(null, null))
 			.expectNextMatches(productsExpected -> products.equals(productsExpected.getBody()))
 			.expectComplete()
 			.verify();
@@ -153,7 +310,7 @@ public class ProductControllerTest {
 		Flux<Product> products = Flux.just(new Product());
 		doReturn(products).when(productService).findAll();
 
-		StepVerifier.create(productController.list())
+		StepVerifier.create(productController.list(null, null))
 			.expectNextMatches(productsExpected -> products.equals(productsExpected.getBody()))
 			.expectComplete()
 			.verify();
@@ -161,6 +318,49 @@ public class ProductControllerTest {
 		verify(productService).findAll();
 	}
 
+	@Test
+	public void listWhenLimitIsPresentAndPageHasNextThenMustReturnPageContentAndNextCursorHeaderTest() {
+		Product product = new Product();
+		ProductPage page = new ProductPage(Arrays.asList(product), "next");
+		doReturn(Mono.just(page)).when(productService).findPage(null, 1);
+
+		StepVerifier.create(productController.list(null, 1))
+			.expectNextMatches(response -> HttpStatus.OK.equals(response.getStatusCode())
+					&& "next".equals(response.getHeaders().getFirst(HeaderEnum.NEXT_CURSOR.getHeader()))
+					&& product.equals(response.getBody().blockFirst()))
+			.expectComplete()
+			.verify();
+
+		verify(productService).findPage(null, 1);
+		verify(productService, Mockito.never()).findAll();
+	}
+
+	@Test
+	public void listWhenAfterIsPresentAndPageHasNotNextThenMustReturnPageContentWithoutNextCursorHeaderTest() {
+		ProductPage page = new ProductPage(new ArrayList<>(), null);
+		doReturn(Mono.just(page)).when(productService).findPage("after", null);
+
+		StepVerifier.create(productController.list("after", null))
+			.expectNextMatches(response -> HttpStatus.OK.equals(response.getStatusCode())
+					&& !response.getHeaders().containsKey(HeaderEnum.NEXT_CURSOR.getHeader()))
+			.expectComplete()
+			.verify();
+
+		verify(productService).findPage("after", null);
+	}
+
+	@Test
+	public void listWhenFindPageThrowIllegalArgumentExceptionThenMustReturnResponseEntityBadRequestTest() {
+		doReturn(Mono.error(new IllegalArgumentException())).when(productService).findPage("after", null);
+
+		StepVerifier.create(productController.list("after", null))
+			.expectNextMatches(badRequest -> HttpStatus.BAD_REQUEST.equals(badRequest.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(productService).findPage("after", null);
+	}
+
 	@Test
 	public void viewWhenFindByIdReturnProductThenMustReturnResponseEntityProductTest() {
 		Product product = new Product();
@@ -258,59 +458,162 @@ public class ProductControllerTest {
 		productPersisted.setName(product.getName());
 		productPersisted.setPrice(product.getPrice());
 		productPersisted.setCategory(product.getCategory());
-		doReturn(Mono.just(productPersisted)).when(productService).findById(id);
-		doReturn(Mono.just(productPersisted)).when(productService).save(productPersisted);
+		productPersisted.setVersion(1L);
+		doReturn(Mono.just(productPersisted)).when(productService).update(id, product, null);
 
-		StepVerifier.create(productController.edit(product, id))
-			.expectNextMatches(productResult -> productPersisted.equals(productResult.getBody()))
+		StepVerifier.create(productController.edit(product, id, "*"))
+			.expectNextMatches(productResult -> productPersisted.equals(productResult.getBody())
+					&& "\"id-1\"".equals(productResult.getHeaders().getETag()))
 			.expectComplete()
 			.verify();
 
-		verify(productService).findById(id);
-		verify(productService).save(productPersisted);
+		verify(productService).update(id, product, null);
+		verify(productService, Mockito.never()).findById(Mockito.any());
+	}
+
+	@Test
+	public void editWhenIfMatchIsPresentMustUpdateWithExpectedVersionTest() {
+		String id = "id";
+		Product product = new Product();
+		doReturn(Mono.empty()).when(productService).update(id, product, 3L);
+
+		StepVerifier.create(productController.edit(product, id, "\"id-3\""))
+			.expectNextMatches(notFound -> ResponseEntity.notFound().build().equals(notFound))
+			.expectComplete()
+			.verify();
+
+		verify(productService).update(id, product, 3L);
+	}
+
+	@Test
+	public void editWhenVersionDoesNotMatchMustReturnResponseEntityConflictTest() {
+		String id = "id";
+		Product product = new Product();
+		doReturn(Mono.error(new OptimisticLockingFailureException("conflict"))).when(productService)
+				.update(id, product, 3L);
+
+		StepVerifier.create(productController.edit(product, id, "\"id-3\""))
+			.expectNextMatches(conflict -> HttpStatus.CONFLICT.equals(conflict.getStatusCode()))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void editWhenIfMatchIsMissingMustReturnResponseEntityPreconditionRequiredWithoutUpdatingTest() {
+		StepVerifier.create(productController.edit(new Product("name", 2d), "id", null))
+			.expectNextMatches(response -> HttpStatus.PRECONDITION_REQUIRED.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(productService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	public void patchWhenIfMatchIsMissingMustReturnResponseEntityPreconditionRequiredWithoutUpdatingTest() {
+		StepVerifier.create(productController.patch(new Product(), "id", null))
+			.expectNextMatches(response -> HttpStatus.PRECONDITION_REQUIRED.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(productService, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	public void editWhenIfMatchIsMalformedMustReturnResponseEntityBadRequestTest() {
+		StepVerifier.create(productController.edit(new Product(), "id", "\"other-3\""))
+			.expectNextMatches(badRequest -> HttpStatus.BAD_REQUEST.equals(badRequest.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		verify(productService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any());
 	}
 
 	@Test
 	public void editWhenProductByIdReturnMonoEmptyMustNotSetAnyAttributeAndReturnResponseEntityNotFoundTest() {
 		String id = "id";
-		doReturn(Mono.empty()).when(productService).findById(id);
+		doReturn(Mono.empty()).when(productService).update(id, null, null);
 
-		StepVerifier.create(productController.edit(null, id))
+		StepVerifier.create(productController.edit(null, id, "*"))
 			.expectNextMatches(notFound -> ResponseEntity.notFound().build().equals(notFound))
 			.expectComplete()
 			.verify();
 
-		verify(productService).findById(id);
+		verify(productService).update(id, null, null);
 		verify(productService, Mockito.never()).save(Mockito.any());
 	}
 	
+	@Test
+	public void patchWhenProductIsUpdatedMustReturnResponseEntityOkOfProductUpdatedTest() {
+		String id = "id";
+		Product product = new Product();
+		product.setPrice(3d);
+		Product productUpdated = new Product("name", 3d);
+		productUpdated.setId(id);
+		productUpdated.setVersion(2L);
+		doReturn(Mono.just(productUpdated)).when(productService).patch(id, product, 1L);
+
+		StepVerifier.create(productController.patch(product, id, "\"id-1\""))
+			.expectNextMatches(productResult -> HttpStatus.OK.equals(productResult.getStatusCode())
+					&& productUpdated.equals(productResult.getBody())
+					&& "\"id-2\"".equals(productResult.getHeaders().getETag()))
+			.expectComplete()
+			.verify();
+
+		verify(productService).patch(id, product, 1L);
+		verify(productService, Mockito.never()).findById(Mockito.any());
+	}
+
+	@Test
+	public void patchWhenProductDoesNotExistMustReturnResponseEntityNotFoundTest() {
+		String id = "id";
+		Product product = new Product();
+		doReturn(Mono.empty()).when(productService).patch(id, product, null);
+
+		StepVerifier.create(productController.patch(product, id, "*"))
+			.expectNextMatches(notFound -> ResponseEntity.notFound().build().equals(notFound))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void patchWhenNoFieldsArePresentMustReturnResponseEntityBadRequestTest() {
+		String id = "id";
+		Product product = new Product();
+		doReturn(Mono.error(new IllegalArgumentException("No fields to update"))).when(productService)
+				.patch(id, product, null);
+
+		StepVerifier.create(productController.patch(product, id, "*"))
+			.expectNextMatches(badRequest -> HttpStatus.BAD_REQUEST.equals(badRequest.getStatusCode()))
+			.expectComplete()
+			.verify();
+	}
+
 	@Test
 	public void deleteWhenProductByIdReturnProductMustDeleteProductAndReturnResponseEntityNoContentTest() {
 		String id = "id";
 		Product product = new Product();
-		doReturn(Mono.just(product)).when(productService).findById(id);
-		doReturn(Mono.empty()).when(productService).delete(product);
+		doReturn(Mono.just(product)).when(productService).deleteById(id);
 
 		StepVerifier.create(productController.delete(id))
 			.expectNextMatches(notFound -> HttpStatus.NO_CONTENT.equals(notFound.getStatusCode()))
 			.expectComplete()
 			.verify();
 
-		verify(productService).findById(id);
-		verify(productService).delete(product);
+		verify(productService).deleteById(id);
+		verify(productService, Mockito.never()).findById(Mockito.any());
 	}
 
 	@Test
 	public void deleteWhenProductByIdReturnMonoEmptyMustReturnResponseEntityNotFoundTest() {
 		String id = "id";
-		doReturn(Mono.empty()).when(productService).findById(id);
+		doReturn(Mono.empty()).when(productService).deleteById(id);
 
 		StepVerifier.create(productController.delete(id))
 			.expectNextMatches(notFound -> HttpStatus.NOT_FOUND.equals(notFound.getStatusCode()))
 			.expectComplete()
 			.verify();
 
-		verify(productService).findById(id);
+		verify(productService).deleteById(id);
 		verify(productService, Mockito.never()).delete(Mockito.any());
 	}
 }
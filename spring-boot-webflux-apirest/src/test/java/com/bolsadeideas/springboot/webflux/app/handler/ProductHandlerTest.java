@@ -0,0 +1,243 @@
+package com.bolsadeideas.springboot.webflux.app.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.BulkItemResult;
+import com.bolsadeideas.springboot.webflux.app.models.services.ProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.bolsadeideas.springboot.webflux.app.storage.UploadValidator;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PATCH;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+
+public class ProductHandlerTest {
+
+	@InjectMocks
+	private ProductHandler productHandler;
+	@Mock
+	private ProductService productService;
+	@Mock
+	private Validator validator;
+	@Mock
+	private PhotoStorage photoStorage;
+	@Mock
+	private UploadValidator uploadValidator;
+
+	private WebTestClient client;
+
+	@BeforeEach
+	void init() {
+		productHandler = new ProductHandler();
+		MockitoAnnotations.openMocks(this);
+		ReflectionTestUtils.setField(productHandler, "bulkBatchSize", 10);
+		client = WebTestClient.bindToRouterFunction(RouterFunctions.route(POST("/bulk"), productHandler::crearLote)
+				.andRoute(PUT("/{id}"), productHandler::editar)
+				.andRoute(PATCH("/{id}"), productHandler::editarParcial)
+				.andRoute(POST("/v2"), productHandler::crearConFoto)
+				.andRoute(POST("/upload/{id}"), productHandler::upload))
+				.build();
+		doAnswer(invocation -> invocation.getArgument(0)).when(uploadValidator).validate(Mockito.any());
+		doAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(1).then(Mono.just(invocation.getArgument(0))))
+				.when(photoStorage).save(Mockito.anyString(), Mockito.any());
+		doReturn(Mono.just(true)).when(photoStorage).delete(Mockito.anyString());
+	}
+
+	@Test
+	public void crearLoteWhenInsertFailsInTheMiddleOfABatchThenMustReportEachProductAndRetryTheRestTest() {
+		List<Product> products = Arrays.asList(product("a"), product("b"), product("c"));
+		MongoBulkWriteException bulkException = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+				Arrays.asList(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)), null,
+				new ServerAddress());
+		doAnswer(invocation -> {
+			List<Product> batch = invocation.getArgument(0);
+			return batch.size() == 3 ? Flux.error(new DuplicateKeyException(bulkException.getMessage(), bulkException))
+					: Flux.fromIterable(batch);
+		}).when(productService).insertAll(Mockito.any());
+
+		List<BulkItemResult> results = client.post().uri("/bulk")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(products)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(BulkItemResult.class)
+				.returnResult()
+				.getResponseBody();
+
+		assertEquals(3, results.size());
+		assertEquals(HttpStatus.CREATED.value(), results.get(0).getStatus());
+		assertEquals("a", results.get(0).getId());
+		assertEquals(HttpStatus.CONFLICT.value(), results.get(1).getStatus());
+		assertNull(results.get(1).getId());
+		assertEquals(Arrays.asList("E11000 duplicate key"), results.get(1).getErrors());
+		assertEquals(HttpStatus.CREATED.value(), results.get(2).getStatus());
+		assertEquals("c", results.get(2).getId());
+		verify(productService, Mockito.times(2)).insertAll(Mockito.any());
+	}
+
+	@Test
+	public void crearLoteWhenInsertFailsWithoutWriteErrorsThenMustReportTheWholeBatchAsFailedTest() {
+		doAnswer(invocation -> Flux.error(new IllegalStateException("timeout"))).when(productService)
+				.insertAll(Mockito.any());
+
+		client.post().uri("/bulk")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(Arrays.asList(product("a"), product("b")))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(BulkItemResult.class)
+				.value(results -> results.forEach(result -> {
+					assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), result.getStatus());
+					assertEquals(Arrays.asList("timeout"), result.getErrors());
+				}))
+				.hasSize(2);
+	}
+
+	@Test
+	public void editarWhenIfMatchIsMissingThenMustReturnPreconditionRequiredWithoutUpdatingTest() {
+		client.put().uri("/a")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(product("a"))
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.PRECONDITION_REQUIRED);
+		client.patch().uri("/a")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(product("a"))
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.PRECONDITION_REQUIRED);
+
+		verify(productService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any());
+		verify(productService, Mockito.never()).patch(Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	public void editarWhenBodyIsInvalidThenMustReturnBadRequestWithoutUpdatingTest() {
+		doAnswer(invocation -> {
+			invocation.<Errors>getArgument(1).rejectValue("name", "NotEmpty", "no debe estar vacio");
+			return null;
+		}).when(validator).validate(Mockito.any(), Mockito.any());
+
+		client.put().uri("/a")
+				.header(HttpHeaders.IF_MATCH, "\"a-1\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new Product())
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody()
+				.jsonPath("$[0]").isEqualTo("El campo name no debe estar vacio");
+
+		verify(productService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	public void uploadWhenRequestHasSeveralFilePartsThenMustReturnBadRequestAndDeleteTheStoredPhotoTest() {
+		Product product = product("a");
+		product.setPhoto("anterior.png");
+		doReturn(Mono.just(product)).when(productService).findById("a");
+
+		client.post().uri("/upload/a")
+				.contentType(MediaType.MULTIPART_FORM_DATA)
+				.bodyValue(photos("uno.png", "dos.png").build())
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody(String.class).isEqualTo("El campo file solo admite un archivo");
+
+		ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+		verify(photoStorage).save(stored.capture(), Mockito.any());
+		assertTrue(stored.getValue().endsWith("uno.png"));
+		verify(photoStorage).delete(stored.getValue());
+		verify(photoStorage, Mockito.never()).delete("anterior.png");
+		verify(productService, Mockito.never()).save(Mockito.any());
+	}
+
+	@Test
+	public void uploadWhenRequestHasOneFilePartThenMustSaveTheProductAndDeleteThePreviousPhotoTest() {
+		Product product = product("a");
+		product.setPhoto("anterior.png");
+		doReturn(Mono.just(product)).when(productService).findById("a");
+		doAnswer(invocation -> Mono.just(invocation.getArgument(0))).when(productService).save(Mockito.any());
+
+		client.post().uri("/upload/a")
+				.contentType(MediaType.MULTIPART_FORM_DATA)
+				.bodyValue(photos("uno.png").build())
+				.exchange()
+				.expectStatus().isCreated();
+
+		assertTrue(product.getPhoto().endsWith("uno.png"));
+		verify(productService).save(product);
+		verify(photoStorage).delete("anterior.png");
+		verify(photoStorage, Mockito.never()).delete(product.getPhoto());
+	}
+
+	@Test
+	public void crearConFotoWhenRequestHasSeveralFilePartsThenMustReturnBadRequestAndDeleteTheStoredPhotoTest() {
+		MultipartBodyBuilder parts = photos("uno.png", "dos.png");
+		parts.part("nombre", "Mesa");
+		parts.part("precio", "10");
+
+		client.post().uri("/v2")
+				.contentType(MediaType.MULTIPART_FORM_DATA)
+				.bodyValue(parts.build())
+				.exchange()
+				.expectStatus().isBadRequest();
+
+		ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+		verify(photoStorage).save(stored.capture(), Mockito.any());
+		verify(photoStorage).delete(stored.getValue());
+		verify(productService, Mockito.never()).save(Mockito.any());
+	}
+
+	private MultipartBodyBuilder photos(String... filenames) {
+		MultipartBodyBuilder parts = new MultipartBodyBuilder();
+		for (String filename : filenames)
+			parts.part("file", new ByteArrayResource(filename.getBytes(StandardCharsets.UTF_8)) {
+				@Override
+				public String getFilename() {
+					return filename;
+				}
+			}, MediaType.IMAGE_PNG);
+		return parts;
+	}
+
+	private Product product(String id) {
+		Product product = new Product("producto " + id, 10.0, new Category("Electronico"));
+		product.setId(id);
+		return product;
+	}
+}
@@ -0,0 +1,63 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MongoCheckoutTimeListenerTest {
+
+	private final ServerId serverId = new ServerId(new ClusterId("cluster"), new ServerAddress("localhost", 27017));
+
+	private SimpleMeterRegistry registry;
+
+	private MongoCheckoutTimeListener listener;
+
+	@BeforeEach
+	void init() {
+		registry = new SimpleMeterRegistry();
+		listener = new MongoCheckoutTimeListener(registry);
+	}
+
+	@Test
+	void connectionCheckedOutWhenCheckoutWasStartedMustRecordTheWaitTaggedBySuccessTest() throws Exception {
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(serverId));
+		Thread.sleep(5);
+		listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(serverId)));
+
+		assertEquals(1, registry.get(MongoCheckoutTimeListener.METER_NAME)
+				.tags("server.address", "localhost:27017", "status", "success").timer().count());
+		assertTrue(registry.get(MongoCheckoutTimeListener.METER_NAME).timer()
+				.totalTime(TimeUnit.MILLISECONDS) >= 5);
+	}
+
+	@Test
+	void connectionCheckOutFailedWhenCheckoutTimesOutMustRecordTheWaitTaggedByReasonTest() {
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(serverId));
+		listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(serverId,
+				ConnectionCheckOutFailedEvent.Reason.TIMEOUT));
+
+		assertEquals(1, registry.get(MongoCheckoutTimeListener.METER_NAME).tag("status", "timeout").timer().count());
+	}
+
+	@Test
+	void connectionCheckedOutWhenNoCheckoutIsPendingMustNotRecordAnythingTest() {
+		listener.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(serverId));
+		listener.connectionPoolClosed(new ConnectionPoolClosedEvent(serverId));
+		listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(serverId)));
+
+		assertTrue(registry.find(MongoCheckoutTimeListener.METER_NAME).timers().isEmpty());
+	}
+}
@@ -0,0 +1,116 @@
+package com.bolsadeideas.springboot.webflux.app.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SlowQueryLoggerTest {
+
+	private final ConnectionDescription connection = new ConnectionDescription(
+			new ServerId(new ClusterId("cluster"), new ServerAddress("localhost", 27017)));
+
+	private SlowQueryLogger slowQueryLogger;
+
+	@BeforeEach
+	void init() {
+		slowQueryLogger = Mockito.spy(new SlowQueryLogger());
+		ReflectionTestUtils.setField(slowQueryLogger, "threshold", Duration.ofMillis(100));
+		ReflectionTestUtils.setField(slowQueryLogger, "explainSampleRate", 1.0);
+		doNothing().when(slowQueryLogger).explain(Mockito.any());
+	}
+
+	@Test
+	void commandSucceededWhenFindIsSlowMustExplainItWithItsFilterAndSortTest() {
+		slowQueryLogger.commandStarted(started(1, "find", BsonDocument.parse(
+				"{find: 'productos', filter: {name: 'TV'}, sort: {_id: 1}, limit: 21, $db: 'spring_boot'}")));
+		slowQueryLogger.commandSucceeded(succeeded(1, "find", 150));
+
+		ArgumentCaptor<SlowQuery> query = ArgumentCaptor.forClass(SlowQuery.class);
+		verify(slowQueryLogger).explain(query.capture());
+		assertEquals(BsonDocument.parse("{explain: {find: 'productos', filter: {name: 'TV'}, sort: {_id: 1}},"
+				+ " verbosity: 'queryPlanner'}"), query.getValue().toExplainCommand());
+		assertEquals(0, slowQueryLogger.getRunningCount());
+	}
+
+	@Test
+	void commandSucceededWhenCommandIsUnderThresholdMustNotExplainItTest() {
+		slowQueryLogger.commandStarted(started(1, "find", BsonDocument.parse("{find: 'productos', filter: {}}")));
+		slowQueryLogger.commandSucceeded(succeeded(1, "find", 20));
+
+		verify(slowQueryLogger, never()).explain(Mockito.any());
+		assertEquals(0, slowQueryLogger.getRunningCount());
+	}
+
+	@Test
+	void commandFailedWhenSlowQueryIsNotSampledMustOnlyLogItTest() {
+		ReflectionTestUtils.setField(slowQueryLogger, "explainSampleRate", 0.0);
+		slowQueryLogger.commandStarted(started(1, "aggregate", BsonDocument.parse(
+				"{aggregate: 'productos', pipeline: [{$match: {price: {$gt: 100}}}], cursor: {}}")));
+		slowQueryLogger.commandFailed(new CommandFailedEvent(1, connection, "aggregate",
+				TimeUnit.MILLISECONDS.toNanos(500), new IllegalStateException("timeout")));
+
+		verify(slowQueryLogger, never()).explain(Mockito.any());
+		assertEquals(0, slowQueryLogger.getRunningCount());
+	}
+
+	@Test
+	void commandStartedWhenCommandIsNotAQueryMustNotTrackItTest() {
+		slowQueryLogger.commandStarted(started(1, "ping", BsonDocument.parse("{ping: 1}")));
+		slowQueryLogger.commandStarted(started(2, "explain", BsonDocument.parse("{explain: {find: 'productos'}}")));
+
+		assertEquals(0, slowQueryLogger.getRunningCount());
+	}
+
+	@Test
+	void slowQueryWhenCommandIsAnUpdateMustKeepTheStatementFilterButNotBeExplainableTest() {
+		SlowQuery query = SlowQuery.from(started(1, "update", BsonDocument.parse(
+				"{update: 'productos', updates: [{q: {'category.id': 'abc'}, u: {$inc: {version: 1}}, multi: true}]}")));
+
+		assertEquals(BsonDocument.parse("{'category.id': 'abc'}"), query.getFilter());
+		assertFalse(query.isExplainable());
+		assertTrue(query.toString().contains("filtro={\"category.id\": \"abc\"}"));
+	}
+
+	@Test
+	void slowQueryWhenCommandIsAFindMustKeepItsFilterAndSortWithoutCopyingThemTest() {
+		BsonDocument command = BsonDocument.parse("{find: 'productos', filter: {name: 'TV'}, sort: {_id: 1}}");
+
+		SlowQuery query = SlowQuery.from(started(1, "find", command));
+
+		assertSame(command.get("filter"), query.getFilter());
+		assertSame(command.get("sort"), query.getSort());
+		assertNull(SlowQuery.from(started(2, "count", BsonDocument.parse("{count: 'productos', sort: {_id: 1}}")))
+				.getSort());
+	}
+
+	private CommandStartedEvent started(int requestId, String name, BsonDocument command) {
+		return new CommandStartedEvent(requestId, connection, "spring_boot", name, command);
+	}
+
+	private CommandSucceededEvent succeeded(int requestId, String name, long elapsedMillis) {
+		return new CommandSucceededEvent(requestId, connection, name, new BsonDocument(),
+				TimeUnit.MILLISECONDS.toNanos(elapsedMillis));
+	}
+}
@@ -0,0 +1,128 @@
+package com.bolsadeideas.springboot.webflux.app.models.services;
+
+import java.time.Duration;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductChange;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Change streams need a replica set, so this runs against an embedded single-node rs0 (mvn test -Pintegration)
+@Tag("integration")
+public class ProductChangeServiceImplIntegrationTest {
+
+	private static final String REPLICA_SET = "rs0";
+
+	// The change stream cursor is opened asynchronously after subscribing, writes made before would not be seen
+	private static final Duration CURSOR_OPEN_DELAY = Duration.ofSeconds(1);
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private static MongodExecutable mongod;
+
+	private static MongoClient mongoClient;
+
+	private ReactiveMongoTemplate mongoTemplate;
+
+	private ProductChangeServiceImpl productChangeService;
+
+	@BeforeAll
+	static void startReplicaSet() throws Exception {
+		int port = Network.getFreeServerPort();
+		mongod = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+				.version(Version.Main.V4_0)
+				.net(new Net(port, Network.localhostIsIPv6()))
+				.replication(new Storage(null, REPLICA_SET, 0))
+				.build());
+		mongod.start();
+
+		mongoClient = MongoClients.create("mongodb://localhost:" + port + "/?directConnection=true");
+		Mono.from(mongoClient.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET)
+				.append("members", List.of(new Document("_id", 0).append("host", "localhost:" + port))))))
+				.block(TIMEOUT);
+		Mono.from(mongoClient.getDatabase("admin").runCommand(new Document("isMaster", 1)))
+				.filter(result -> result.getBoolean("ismaster", false))
+				.repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(250)))
+				.block(TIMEOUT);
+	}
+
+	@AfterAll
+	static void stopReplicaSet() {
+		if (mongoClient != null)
+			mongoClient.close();
+		if (mongod != null)
+			mongod.stop();
+	}
+
+	@BeforeEach
+	void init() {
+		mongoTemplate = new ReactiveMongoTemplate(mongoClient, "productos_changes_it");
+		mongoTemplate.dropCollection(Product.class).then(mongoTemplate.createCollection(Product.class)).block(TIMEOUT);
+		productChangeService = new ProductChangeServiceImpl();
+		ReflectionTestUtils.setField(productChangeService, "mongoTemplate", mongoTemplate);
+	}
+
+	@Test
+	void findChangesWhenProductIsInsertedUpdatedAndDeletedMustEmitEachOperationWithItsResumeTokenTest() {
+		Product product = new Product("TV Panasonic", 450.0);
+
+		StepVerifier.create(productChangeService.findChanges(null).take(3))
+			.then(() -> Mono.delay(CURSOR_OPEN_DELAY)
+					.then(mongoTemplate.insert(product))
+					.flatMap(inserted -> {
+						inserted.setPrice(500.0);
+						return mongoTemplate.save(inserted);
+					})
+					.flatMap(mongoTemplate::remove)
+					.block(TIMEOUT))
+			.expectNextMatches(change -> "insert".equals(change.getOperation()) && change.getResumeToken() != null)
+			.expectNextMatches(change -> "update".equals(change.getOperation()) && change.getProduct().getPrice() == 500.0)
+			.expectNextMatches(change -> "delete".equals(change.getOperation())
+					&& product.getId().equals(change.getProductId()) && change.getProduct() == null)
+			.expectComplete()
+			.verify(TIMEOUT);
+	}
+
+	@Test
+	void findChangesWhenResumeTokenIsGivenMustReplayOnlyTheChangesAfterItTest() {
+		List<ProductChange> changes = Flux.merge(productChangeService.findChanges(null).take(3),
+				Mono.delay(CURSOR_OPEN_DELAY)
+						.thenMany(Flux.concat(mongoTemplate.insert(new Product("Apple iPod", 46.89)),
+								mongoTemplate.insert(new Product("Sony Camara HD", 177.89)),
+								mongoTemplate.insert(new Product("Bianchi Bicicleta", 70.89))))
+						.then(Mono.empty()))
+				.collectList()
+				.block(TIMEOUT);
+
+		StepVerifier.create(productChangeService.findChanges(changes.get(0).getResumeToken()).take(2))
+			.expectNextMatches(change -> change.getProductId().equals(changes.get(1).getProductId()))
+			.expectNextMatches(change -> change.getProductId().equals(changes.get(2).getProductId()))
+			.expectComplete()
+			.verify(TIMEOUT);
+		assertEquals(changes.get(2).getResumeToken(), productChangeService.findChanges(changes.get(0).getResumeToken())
+				.skip(1)
+				.blockFirst(TIMEOUT)
+				.getResumeToken());
+	}
+}
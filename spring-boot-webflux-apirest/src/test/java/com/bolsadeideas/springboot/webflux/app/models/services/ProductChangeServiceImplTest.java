@@ -0,0 +1,120 @@
+package com.bolsadeideas.springboot.webflux.app.models.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.models.dto.ProductChange;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+public class ProductChangeServiceImplTest {
+
+	@InjectMocks
+	private ProductChangeServiceImpl productChangeService;
+	@Mock
+	private ReactiveMongoTemplate mongoTemplate;
+
+	@BeforeEach
+	void init() {
+		productChangeService = new ProductChangeServiceImpl();
+		MockitoAnnotations.openMocks(this);
+		doReturn("productos").when(mongoTemplate).getCollectionName(Product.class);
+	}
+
+	@Test
+	public void findChangesWhenResumeTokenIsNullThenMustShareOneChangeStreamBetweenSubscribersTest() {
+		Product product = new Product();
+		product.setId("id");
+		ChangeStreamEvent<Product> event = mockEvent(OperationType.INSERT, product, "token");
+		Sinks.Many<ChangeStreamEvent<Product>> events = Sinks.many().multicast().directBestEffort();
+		doReturn(events.asFlux()).when(mongoTemplate).changeStream(Mockito.eq("productos"),
+				Mockito.any(ChangeStreamOptions.class), Mockito.eq(Product.class));
+		List<ProductChange> firstChanges = new ArrayList<>();
+		List<ProductChange> secondChanges = new ArrayList<>();
+
+		Disposable first = productChangeService.findChanges(null).subscribe(firstChanges::add);
+		Disposable second = productChangeService.findChanges(null).subscribe(secondChanges::add);
+		events.tryEmitNext(event);
+		first.dispose();
+		second.dispose();
+
+		assertEquals(1, firstChanges.size());
+		assertEquals("insert", firstChanges.get(0).getOperation());
+		assertEquals(firstChanges, secondChanges);
+		verify(mongoTemplate).changeStream(Mockito.eq("productos"),
+				Mockito.argThat(options -> options.getResumeToken().isEmpty()), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findChangesWhenResumeTokenIsPresentThenMustOpenChangeStreamResumingAfterItTest() {
+		Product product = new Product();
+		product.setId("id");
+		ChangeStreamEvent<Product> event = mockEvent(OperationType.REPLACE, product, "next");
+		doReturn(Flux.just(event)).when(mongoTemplate).changeStream(Mockito.eq("productos"),
+				Mockito.any(ChangeStreamOptions.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productChangeService.findChanges("token"))
+			.expectNextMatches(change -> "update".equals(change.getOperation())
+					&& "id".equals(change.getProductId())
+					&& product.equals(change.getProduct())
+					&& "next".equals(change.getResumeToken()))
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).changeStream(Mockito.eq("productos"),
+				Mockito.argThat(options -> options.isResumeAfter()
+						&& new BsonDocument("_data", new BsonString("token")).equals(options.getResumeToken().get())),
+				Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findChangesWhenOperationIsDeleteThenMustTakeProductIdFromDocumentKeyTest() {
+		ObjectId id = new ObjectId();
+		ChangeStreamEvent<Product> event = mockEvent(OperationType.DELETE, null, "token");
+		ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(OperationType.DELETE,
+				new BsonDocument("_data", new BsonString("token")), null, null, null,
+				new BsonDocument("_id", new BsonObjectId(id)), null, null, null, null);
+		doReturn(raw).when(event).getRaw();
+		doReturn(Flux.just(event)).when(mongoTemplate).changeStream(Mockito.eq("productos"),
+				Mockito.any(ChangeStreamOptions.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productChangeService.findChanges("token"))
+			.expectNextMatches(change -> "delete".equals(change.getOperation())
+					&& id.toHexString().equals(change.getProductId())
+					&& null == change.getProduct())
+			.expectComplete()
+			.verify();
+	}
+
+	@SuppressWarnings("unchecked")
+	private ChangeStreamEvent<Product> mockEvent(OperationType operationType, Product product, String resumeToken) {
+		ChangeStreamEvent<Product> event = Mockito.mock(ChangeStreamEvent.class);
+		doReturn(operationType).when(event).getOperationType();
+		doReturn(product).when(event).getBody();
+		doReturn(new BsonDocument("_data", new BsonString(resumeToken))).when(event).getResumeToken();
+		return event;
+	}
+}
@@ -1,22 +1,49 @@
 package com.bolsadeideas.springboot.webflux.app.models.services;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Function;
 
+import com.bolsadeideas.springboot.webflux.app.cache.ProductCache;
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
 import com.bolsadeideas.springboot.webflux.app.models.dao.ICategoryDao;
 import com.bolsadeideas.springboot.webflux.app.models.dao.IProductDao;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoStorage;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
 
@@ -30,11 +57,23 @@ public class ProductServiceImplTest {
 	private IProductDao productDao;
 	@Mock
 	private ICategoryDao categoryDao;
+	@Mock
+	private ReactiveMongoTemplate mongoTemplate;
+	@Mock
+	private ProductCache productCache;
+	@Mock
+	private PhotoStorage photoStorage;
 
 	@BeforeEach
 	void init() {
 		productService = new ProductServiceImpl();
 		MockitoAnnotations.openMocks(this);
+		ReflectionTestUtils.setField(productService, "defaultLimit", 2);
+		ReflectionTestUtils.setField(productService, "maxLimit", 3);
+		ReflectionTestUtils.setField(productService, "streamBatchSize", 4);
+		doReturn(Mono.empty()).when(productCache).evict(Mockito.any());
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("versiones"));
 	}
 
 	@Test
@@ -50,20 +89,220 @@ public class ProductServiceImplTest {
 		verify(productDao).findAll();
 	}
 
+	@Test
+	public void findAllWhenFieldsAreEmptyThenMustFindAllProductsWithoutProjectionTest() {
+		Product product = new Product();
+		doReturn(Flux.just(product)).when(productDao).findAll();
+
+		StepVerifier.create(productService.findAll(EnumSet.noneOf(ProductFieldEnum.class)))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(productDao).findAll();
+		verify(mongoTemplate, Mockito.never()).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findAllWhenFieldsArePresentThenMustFindProductsWithProjectionTest() {
+		Product product = new Product();
+		doReturn(Flux.just(product)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findAll(EnumSet.of(ProductFieldEnum.NAME, ProductFieldEnum.PRICE)))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).find(Mockito.argThat((Query query) -> 3 == query.getFieldsObject().size()
+				&& 1 == query.getFieldsObject().getInteger("name")
+				&& 1 == query.getFieldsObject().getInteger("price")
+				&& 1 == query.getFieldsObject().getInteger("version")), Mockito.eq(Product.class));
+		verify(productDao, Mockito.never()).findAll();
+	}
+
+	@Test
+	public void findAllStreamWhenIsInvokedThenMustRequestProductsInBatchesOfStreamBatchSizeTest() {
+		List<Long> requests = new ArrayList<>();
+		doReturn(Flux.range(0, 10).map(index -> new Product()).doOnRequest(requests::add))
+			.when(productDao).findAll();
+
+		StepVerifier.create(productService.findAllStream(), 1)
+			.expectNextCount(1)
+			.thenRequest(Long.MAX_VALUE)
+			.expectNextCount(9)
+			.expectComplete()
+			.verify();
+
+		verify(productDao).findAll();
+		requests.forEach(request -> assertTrue(request <= 4));
+	}
+
+	@Test
+	public void findAllAfterWhenAfterIsNotValidObjectIdThenMustReturnIllegalArgumentExceptionTest() {
+
+		StepVerifier.create(productService.findAllAfter("after", 1))
+			.expectError(IllegalArgumentException.class)
+			.verify();
+
+		verify(mongoTemplate, Mockito.never()).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findAllAfterWhenAfterIsValidObjectIdThenMustFindProductsWithGreaterIdTest() {
+		String after = "61b0f1a2c3d4e5f6a7b8c9d0";
+		Product product = new Product();
+		doReturn(Flux.just(product)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findAllAfter(after, 1))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).find(Mockito.argThat((Query query) -> 1 == query.getLimit()
+				&& query.getQueryObject().containsKey("id")), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findPageWhenThereAreMoreProductsThanLimitThenMustReturnPageWithNextCursorTest() {
+		Product first = new Product();
+		first.setId("first");
+		Product second = new Product();
+		second.setId("second");
+		doReturn(Flux.just(first, second)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findPage(null, 1))
+			.expectNextMatches(page -> 1 == page.getContent().size()
+					&& first.equals(page.getContent().get(0))
+					&& "first".equals(page.getNext()))
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).find(Mockito.argThat((Query query) -> 2 == query.getLimit()), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findPageWhenLimitIsNullAndThereAreNotMoreProductsThenMustReturnPageWithoutNextCursorTest() {
+		Product product = new Product();
+		doReturn(Flux.just(product)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findPage(null, null))
+			.expectNextMatches(page -> 1 == page.getContent().size() && !page.hasNext())
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).find(Mockito.argThat((Query query) -> 3 == query.getLimit()), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void findPageWhenLimitIsGreaterThanMaxLimitThenMustUseMaxLimitTest() {
+		doReturn(Flux.empty()).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findPage(null, 50))
+			.expectNextMatches(page -> page.getContent().isEmpty() && !page.hasNext())
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).find(Mockito.argThat((Query query) -> 4 == query.getLimit()), Mockito.eq(Product.class));
+	}
+
 	@Test
 	public void findByIdWhenIsInvokedThenMustFindProductByIdAndReturnItTest() {
 		Product product = new Product();
 		String id = "id";
 		doReturn(Mono.just(product)).when(productDao).findById(id);
+		doAnswer(invocation -> invocation.<Function<String, Mono<Product>>>getArgument(1).apply(id))
+			.when(productCache).get(Mockito.eq(id), Mockito.any());
 
 		StepVerifier.create(productService.findById(id))
 			.expectNext(product)
 			.expectComplete()
 			.verify();
 
+		verify(productCache).get(Mockito.eq(id), Mockito.any());
 		verify(productDao).findById(id);
 	}
 
+	@Test
+	public void findByIdWhenFieldsArePresentThenMustFindProductWithProjectionWithoutCacheTest() {
+		Product product = new Product();
+		String id = "id";
+		doReturn(Mono.just(product)).when(mongoTemplate).findOne(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.findById(id, EnumSet.of(ProductFieldEnum.NAME)))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).findOne(Mockito.argThat((Query query) -> id.equals(query.getQueryObject().get("id"))
+				&& 1 == query.getFieldsObject().getInteger("name")), Mockito.eq(Product.class));
+		verify(productCache, Mockito.never()).get(Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	public void findByIdWhenProductIsCachedThenMustReturnItWithoutFindingItTest() {
+		Product product = new Product();
+		String id = "id";
+		doReturn(Mono.just(product)).when(productCache).get(Mockito.eq(id), Mockito.any());
+
+		StepVerifier.create(productService.findById(id))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(productDao, Mockito.never()).findById(id);
+	}
+
+	@Test
+	public void findByIdWhenPipelineRunsThenMustRecordSubscriptionsAndFlowDurationByMethodAndStatusTest() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		Metrics.globalRegistry.add(registry);
+		try {
+			doReturn(Mono.just(new Product())).when(productCache).get(Mockito.eq("id"), Mockito.any());
+
+			StepVerifier.create(productService.findById("id"))
+				.expectNextCount(1)
+				.expectComplete()
+				.verify();
+			StepVerifier.create(productService.findAllAfter("cursor", 1))
+				.expectError(IllegalArgumentException.class)
+				.verify();
+
+			assertEquals(1, registry.get("productos.servicio.subscribed").tag("method", "findById").counter().count());
+			assertEquals(1, registry.get("productos.servicio.flow.duration").tags("method", "findById", "status", "completed")
+					.timer().count());
+			assertEquals(1, registry.get("productos.servicio.flow.duration").tags("method", "findAllAfter", "status", "error")
+					.timer().count());
+		} finally {
+			Metrics.globalRegistry.remove(registry);
+		}
+	}
+
+	@Test
+	public void findPageAndRepeatWhenPipelinesRunThenMustRecordOnlyTheirOwnMethodTest() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		Metrics.globalRegistry.add(registry);
+		try {
+			doReturn(Flux.just(new Product())).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+			doReturn(Flux.just(new Product("mesa", 10.0))).when(productDao).findAll();
+
+			StepVerifier.create(productService.findPage(null, 1))
+				.expectNextCount(1)
+				.expectComplete()
+				.verify();
+			StepVerifier.create(productService.findAllWithNameUpperCaseRepeat())
+				.expectNextCount(6)
+				.expectComplete()
+				.verify();
+
+			assertEquals(1, subscribed(registry, "findPage"));
+			assertEquals(1, subscribed(registry, "findAllWithNameUpperCaseRepeat"));
+			assertEquals(0, subscribed(registry, "findAllAfter"));
+			assertEquals(0, subscribed(registry, "findAllWithNameUpperCase"));
+		} finally {
+			Metrics.globalRegistry.remove(registry);
+		}
+	}
+
 	@Test
 	public void saveWhenIsInvokedThenMustSaveAndReturnProductTest() {
 		Product product = new Product();
@@ -75,6 +314,271 @@ public class ProductServiceImplTest {
 			.verify();
 
 		verify(productDao).save(product);
+		verify(productCache).evict(product.getId());
+	}
+
+	@Test
+	public void saveWhenSaveFailsThenMustEvictTheCachedProductAndPropagateTheErrorTest() {
+		Product product = new Product();
+		product.setId("1");
+		doReturn(Mono.error(new OptimisticLockingFailureException("version"))).when(productDao).save(product);
+
+		StepVerifier.create(productService.save(product))
+			.expectError(OptimisticLockingFailureException.class)
+			.verify();
+
+		verify(productCache).evict("1");
+	}
+
+	@Test
+	public void findCatalogVersionWhenCounterExistsThenMustReadItByIdTest() {
+		doReturn(Mono.just(new Document("_id", "productos").append("version", 7L))).when(mongoTemplate)
+				.findById("productos", Document.class, "versiones");
+
+		StepVerifier.create(productService.findCatalogVersion())
+			.expectNext("7")
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate, Mockito.never()).aggregate(Mockito.any(Aggregation.class), Mockito.eq(Product.class),
+				Mockito.eq(Document.class));
+	}
+
+	@Test
+	public void findCatalogVersionWhenThereIsNoCounterThenMustReturnZeroTest() {
+		doReturn(Mono.empty()).when(mongoTemplate).findById("productos", Document.class, "versiones");
+
+		StepVerifier.create(productService.findCatalogVersion())
+			.expectNext("0")
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void updatePriceByCategoryWhenPricesChangeThenMustBumpTheCatalogVersionAfterTheWriteTest() {
+		doReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null))).when(mongoTemplate)
+				.updateMulti(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Product.class));
+		doReturn(Mono.empty()).when(productCache).evictAll();
+
+		StepVerifier.create(productService.updatePriceByCategory("c1", 1.1))
+			.expectNextCount(1)
+			.expectComplete()
+			.verify();
+
+		InOrder inOrder = Mockito.inOrder(mongoTemplate);
+		inOrder.verify(mongoTemplate).updateMulti(Mockito.any(Query.class), Mockito.any(Update.class),
+				Mockito.eq(Product.class));
+		inOrder.verify(mongoTemplate).upsert(Mockito.any(Query.class),
+				Mockito.eq(new Update().inc("version", 1)), Mockito.eq("versiones"));
+	}
+
+	@Test
+	public void updateWhenVersionMatchesThenMustSetFieldsAndIncrementVersionInOneRoundTripTest() {
+		Product product = new Product("name", 2d);
+		Product productUpdated = new Product("name", 2d);
+		productUpdated.setId("1");
+		productUpdated.setVersion(4L);
+		doReturn(Mono.just(productUpdated)).when(mongoTemplate).findAndModify(Mockito.any(Query.class),
+				Mockito.any(Update.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.update("1", product, 3L))
+			.expectNext(productUpdated)
+			.expectComplete()
+			.verify();
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+		verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), Mockito.eq(Product.class));
+		assertEquals(3L, query.getValue().getQueryObject().get("version"));
+		assertEquals("name", update.getValue().getUpdateObject().get("$set", Document.class).get("name"));
+		assertEquals(1, update.getValue().getUpdateObject().get("$inc", Document.class).get("version"));
+		assertTrue(options.getValue().isReturnNew());
+		verify(mongoTemplate, Mockito.never()).exists(Mockito.any(Query.class), Mockito.eq(Product.class));
+		verify(productCache).evict("1");
+	}
+
+	@Test
+	public void updateWhenVersionDoesNotMatchAndProductExistsThenMustFailWithOptimisticLockingTest() {
+		doReturn(Mono.empty()).when(mongoTemplate).findAndModify(Mockito.any(Query.class),
+				Mockito.any(Update.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Product.class));
+		doReturn(Mono.just(true)).when(mongoTemplate).exists(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.update("1", new Product(), 3L))
+			.expectError(OptimisticLockingFailureException.class)
+			.verify();
+
+		verify(productCache, Mockito.never()).evict(Mockito.any());
+	}
+
+	@Test
+	public void updateWhenProductDoesNotExistThenMustReturnEmptyTest() {
+		doReturn(Mono.empty()).when(mongoTemplate).findAndModify(Mockito.any(Query.class),
+				Mockito.any(Update.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Product.class));
+		doReturn(Mono.just(false)).when(mongoTemplate).exists(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.update("1", new Product(), 3L))
+			.expectComplete()
+			.verify();
+
+		StepVerifier.create(productService.update("1", new Product(), null))
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).exists(Mockito.any(Query.class), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void patchWhenSomeFieldsArePresentThenMustSetOnlyThoseFieldsTest() {
+		Product product = new Product();
+		product.setPrice(5d);
+		Product productUpdated = new Product("name", 5d);
+		doReturn(Mono.just(productUpdated)).when(mongoTemplate).findAndModify(Mockito.any(Query.class),
+				Mockito.any(Update.class), Mockito.any(FindAndModifyOptions.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.patch("1", product, null))
+			.expectNext(productUpdated)
+			.expectComplete()
+			.verify();
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).findAndModify(query.capture(), update.capture(), Mockito.any(FindAndModifyOptions.class),
+				Mockito.eq(Product.class));
+		assertEquals(1, query.getValue().getQueryObject().size());
+		assertEquals(new Document("price", 5d), update.getValue().getUpdateObject().get("$set", Document.class));
+		assertEquals(1, update.getValue().getUpdateObject().get("$inc", Document.class).get("version"));
+		verify(productDao, Mockito.never()).findById(Mockito.anyString());
+	}
+
+	@Test
+	public void patchWhenNoFieldsArePresentThenMustFailWithIllegalArgumentExceptionTest() {
+
+		StepVerifier.create(productService.patch("1", new Product(), null))
+			.expectError(IllegalArgumentException.class)
+			.verify();
+
+		verify(mongoTemplate, Mockito.never()).findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+				Mockito.any(FindAndModifyOptions.class), Mockito.eq(Product.class));
+	}
+
+	@Test
+	public void deleteByIdWhenProductExistsThenMustRemoveItInOneRoundTripAndDeleteItsPhotoTest() {
+		Product product = new Product();
+		product.setPhoto("photo.jpg");
+		doReturn(Mono.just(product)).when(mongoTemplate).findAndRemove(Mockito.any(Query.class), Mockito.eq(Product.class));
+		doReturn(Mono.just(true)).when(photoStorage).delete("photo.jpg");
+
+		StepVerifier.create(productService.deleteById("1"))
+			.expectNext(product)
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).findAndRemove(Mockito.argThat((Query query) -> 1 == query.getFieldsObject().size()
+				&& 1 == query.getFieldsObject().getInteger("photo")), Mockito.eq(Product.class));
+		verify(productDao, Mockito.never()).findById(Mockito.anyString());
+		verify(productCache).evict("1");
+		verify(photoStorage).delete("photo.jpg");
+	}
+
+	@Test
+	public void deleteByIdWhenProductDoesNotExistThenMustReturnEmptyTest() {
+		doReturn(Mono.empty()).when(mongoTemplate).findAndRemove(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.deleteById("1"))
+			.expectComplete()
+			.verify();
+
+		verify(productCache, Mockito.never()).evict(Mockito.any());
+		verify(photoStorage, Mockito.never()).delete(Mockito.any());
+	}
+
+	@Test
+	public void insertAllWhenIsInvokedThenMustInsertProductsInOneBatchTest() {
+		List<Product> products = List.of(new Product(), new Product());
+		doReturn(Flux.fromIterable(products)).when(mongoTemplate).insert(products, Product.class);
+
+		StepVerifier.create(productService.insertAll(products))
+			.expectNextSequence(products)
+			.expectComplete()
+			.verify();
+
+		verify(mongoTemplate).insert(products, Product.class);
+	}
+
+	@Test
+	public void insertAllWhenInsertFailsThenMustHaveAssignedTheIdsBeforeInsertingTest() {
+		List<Product> products = List.of(new Product(), new Product());
+		doReturn(Flux.error(new DuplicateKeyException("E11000"))).when(mongoTemplate).insert(products, Product.class);
+
+		StepVerifier.create(productService.insertAll(products))
+			.expectError(DuplicateKeyException.class)
+			.verify();
+
+		products.forEach(product -> assertTrue(ObjectId.isValid(product.getId())));
+	}
+
+	@Test
+	public void updatePriceByCategoryWhenIsInvokedThenMustUpdateAllMatchesInOneCommandTest() {
+		UpdateResult result = UpdateResult.acknowledged(3, 3L, null);
+		doReturn(Mono.just(result)).when(mongoTemplate).updateMulti(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Product.class));
+		doReturn(Mono.empty()).when(productCache).evictAll();
+
+		StepVerifier.create(productService.updatePriceByCategory("cat1", 1.1))
+			.expectNext(result)
+			.expectComplete()
+			.verify();
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateMulti(query.capture(), update.capture(), Mockito.eq(Product.class));
+		assertEquals("cat1", query.getValue().getQueryObject().get("category.id"));
+		assertEquals(1.1, update.getValue().getUpdateObject().get("$mul", Document.class).get("price"));
+		assertEquals(1, update.getValue().getUpdateObject().get("$inc", Document.class).get("version"));
+		verify(productCache).evictAll();
+	}
+
+	@Test
+	public void deleteByCategoryWhenIsInvokedThenMustRemoveAllMatchesWithOneFilterAndDeleteTheirPhotosTest() {
+		Product withPhoto = new Product();
+		withPhoto.setPhoto("photo.jpg");
+		doReturn(Flux.just(withPhoto)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+		doReturn(Mono.just(DeleteResult.acknowledged(2))).when(mongoTemplate)
+				.remove(Mockito.any(Query.class), Mockito.eq(Product.class));
+		doReturn(Mono.just(true)).when(photoStorage).delete("photo.jpg");
+		doReturn(Mono.empty()).when(productCache).evictAll();
+
+		StepVerifier.create(productService.deleteByCategory("cat1"))
+			.expectNextMatches(result -> result.getDeletedCount() == 2)
+			.expectComplete()
+			.verify();
+
+		ArgumentCaptor<Query> photos = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).find(photos.capture(), Mockito.eq(Product.class));
+		assertEquals(Document.parse("{'category.id': 'cat1', photo: {$ne: null}}"), photos.getValue().getQueryObject());
+		assertEquals(new Document("photo", 1), photos.getValue().getFieldsObject());
+		ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).remove(removed.capture(), Mockito.eq(Product.class));
+		assertEquals(new Document("category.id", "cat1"), removed.getValue().getQueryObject());
+		verify(mongoTemplate, Mockito.never()).findAllAndRemove(Mockito.any(Query.class), Mockito.eq(Product.class));
+		verify(photoStorage).delete("photo.jpg");
+		verify(photoStorage, Mockito.times(1)).delete(Mockito.any());
+		verify(productCache).evictAll();
+	}
+
+	@Test
+	public void deleteByCategoryWhenRemoveFailsThenMustKeepThePhotosTest() {
+		Product withPhoto = new Product();
+		withPhoto.setPhoto("photo.jpg");
+		doReturn(Flux.just(withPhoto)).when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Product.class));
+		doReturn(Mono.error(new IllegalStateException("timeout"))).when(mongoTemplate)
+				.remove(Mockito.any(Query.class), Mockito.eq(Product.class));
+
+		StepVerifier.create(productService.deleteByCategory("cat1"))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		verify(photoStorage, Mockito.never()).delete(Mockito.any());
 	}
 
 	@Test
@@ -88,6 +592,7 @@ public class ProductServiceImplTest {
 			.verify();
 
 		verify(productDao).delete(product);
+		verify(productCache).evict(product.getId());
 	}
 
 	@Test
@@ -108,9 +613,9 @@ public class ProductServiceImplTest {
 	}
 
 	@Test
-	public void findAllWithNameUpperCaseRepeatWhenIsInvokedThenInvokeFindAllWithNameUpperCaseAndDuplicateFiveTimesSameItemsTest() {
+	public void findAllWithNameUpperCaseRepeatWhenIsInvokedThenInvokeFindWithNameUpperCaseAndDuplicateFiveTimesSameItemsTest() {
 		Product product = new Product();
-		doReturn(Flux.just(product)).when(productService).findAllWithNameUpperCase();
+		doReturn(Flux.just(product)).when(productService).findWithNameUpperCase();
 
 		StepVerifier.create(productService.findAllWithNameUpperCaseRepeat())
 			.expectNext(product)
@@ -118,7 +623,8 @@ public class ProductServiceImplTest {
 			.expectComplete()
 			.verify();
 
-		verify(productService).findAllWithNameUpperCase();
+		verify(productService).findWithNameUpperCase();
+		verify(productService, Mockito.never()).findAllWithNameUpperCase();
 	}
 
 	@Test
@@ -188,4 +694,9 @@ public class ProductServiceImplTest {
 
 		verify(categoryDao).findByName(name);
 	}
+
+	private double subscribed(SimpleMeterRegistry registry, String method) {
+		Counter counter = registry.find("productos.servicio.subscribed").tag("method", method).counter();
+		return counter == null ? 0 : counter.count();
+	}
 }
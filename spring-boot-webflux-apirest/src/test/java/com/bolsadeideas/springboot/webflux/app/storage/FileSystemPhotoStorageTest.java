@@ -0,0 +1,342 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+public class FileSystemPhotoStorageTest {
+
+	private static final String FOOBAR_SHA256 = "c3ab8ff13720e8ad9047dd39466b3c8974e592c2fa383d4a3960714caef0c4f2";
+
+	@TempDir
+	Path path;
+
+	private FileSystemPhotoStorage photoStorage;
+
+	private ReactiveMongoTemplate mongoTemplate;
+
+	private PhotoVariants photoVariants;
+
+	@BeforeEach
+	void init() {
+		photoStorage = new FileSystemPhotoStorage();
+		mongoTemplate = Mockito.mock(ReactiveMongoTemplate.class);
+		photoVariants = Mockito.mock(PhotoVariants.class);
+		ReflectionTestUtils.setField(photoStorage, "path", path.toString());
+		ReflectionTestUtils.setField(photoStorage, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(photoStorage, "photoVariants", photoVariants);
+		doReturn(Mono.empty()).when(photoVariants).delete(Mockito.anyString());
+	}
+
+	@Test
+	void saveWhenContentIsStreamedMustWriteItToTheFinalFileWithoutLeavingTempFilesTest() throws Exception {
+		StepVerifier.create(photoStorage.save("photo.jpg", content("foo", "bar")))
+			.expectNext("photo.jpg")
+			.expectComplete()
+			.verify();
+
+		assertEquals("foobar", Files.readString(path.resolve("photo.jpg")));
+		try (Stream<Path> files = Files.list(path)) {
+			assertEquals(1, files.count());
+		}
+		verify(photoVariants).generate(Mockito.eq("photo.jpg"), Mockito.any());
+	}
+
+	@Test
+	void saveWhenContentFailsMustRemoveTempFileAndPropagateErrorTest() throws Exception {
+		Flux<DataBuffer> content = Flux.concat(
+				Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("foo".getBytes(StandardCharsets.UTF_8))),
+				Flux.error(new IllegalStateException("broken")));
+
+		StepVerifier.create(photoStorage.save("photo.jpg", content))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		try (Stream<Path> files = Files.list(path)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	void saveWhenContentAddressedMustStoreBlobUnderItsDigestAndCountTheReferenceOnceItIsPlacedTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		String blob = FOOBAR_SHA256 + ".jpg";
+		doReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null))).when(mongoTemplate)
+				.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+		doAnswer(invocation -> Mono.fromSupplier(() -> UpdateResult.acknowledged(
+				Files.exists(path.resolve(blob)) ? 1 : 0, 1L, null)))
+				.when(mongoTemplate).updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.save("uuid-photo.JPG", content("foobar")))
+			.expectNext(blob)
+			.expectComplete()
+			.verify();
+
+		assertEquals("foobar", Files.readString(path.resolve(blob)));
+		try (Stream<Path> files = Files.list(path)) {
+			assertEquals(1, files.count());
+		}
+		ArgumentCaptor<Update> reservation = ArgumentCaptor.forClass(Update.class);
+		ArgumentCaptor<Update> reference = ArgumentCaptor.forClass(Update.class);
+		InOrder inOrder = Mockito.inOrder(mongoTemplate);
+		inOrder.verify(mongoTemplate).upsert(Mockito.any(Query.class), reservation.capture(), Mockito.eq("fotos"));
+		inOrder.verify(mongoTemplate).updateFirst(Mockito.any(Query.class), reference.capture(), Mockito.eq("fotos"));
+		assertEquals(new Document("pending", 1), reservation.getValue().getUpdateObject().get("$inc"));
+		assertEquals(new Document("refs", 1).append("pending", -1), reference.getValue().getUpdateObject().get("$inc"));
+	}
+
+	@Test
+	void saveWhenContentAddressedAndBlobExistsMustKeepExistingBlobTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		Path blob = Files.writeString(path.resolve(FOOBAR_SHA256 + ".jpg"), "foobar");
+		FileTime modified = Files.getLastModifiedTime(blob);
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.save("other.jpg", content("foobar")))
+			.expectNext(FOOBAR_SHA256 + ".jpg")
+			.expectComplete()
+			.verify();
+
+		assertEquals(modified, Files.getLastModifiedTime(blob));
+		try (Stream<Path> files = Files.list(path)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	void saveWhenContentAddressedAndPlacingTheBlobFailsMustReleaseTheReservationWithoutCountingItTest() throws Exception {
+		photoStorage = new FileSystemPhotoStorage() {
+			@Override
+			protected Mono<Void> place(Path temp, String blob) {
+				return Mono.error(new IllegalStateException("broken"));
+			}
+		};
+		ReflectionTestUtils.setField(photoStorage, "path", path.toString());
+		ReflectionTestUtils.setField(photoStorage, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		doReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null))).when(mongoTemplate)
+				.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.save("photo.jpg", content("foobar")))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		ArgumentCaptor<Update> release = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateFirst(Mockito.any(Query.class), release.capture(), Mockito.eq("fotos"));
+		assertEquals(new Document("pending", -1), release.getValue().getUpdateObject().get("$inc"));
+		try (Stream<Path> files = Files.list(path)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	void saveWhenContentAddressedAndTheBlobIsBeingDeletedMustWaitForTheDeletionBeforePlacingItTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		String blob = FOOBAR_SHA256 + ".jpg";
+		AtomicInteger reservations = new AtomicInteger();
+		// While the deletion holds the reference document the upsert cannot match it and collides with its id
+		doAnswer(invocation -> Mono.defer(() -> reservations.incrementAndGet() == 1
+				? Mono.error(new DuplicateKeyException("E11000")) : Mono.just(UpdateResult.acknowledged(0, 0L, null))))
+				.when(mongoTemplate).upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.save("other.jpg", content("foobar")))
+			.expectNext(blob)
+			.expectComplete()
+			.verify(Duration.ofSeconds(5));
+
+		assertEquals(2, reservations.get());
+		assertEquals("foobar", Files.readString(path.resolve(blob)));
+	}
+
+	@Test
+	void deleteWhenContentAddressedAndOtherReferencesRemainMustKeepBlobTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		Path blob = Files.createFile(path.resolve("blob.jpg"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 1))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+						Mockito.any(FindAndModifyOptions.class), Mockito.eq(Document.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.delete("blob.jpg"))
+			.expectNext(false)
+			.expectComplete()
+			.verify();
+
+		assertTrue(Files.exists(blob));
+		verify(mongoTemplate, Mockito.never()).remove(Mockito.any(Query.class), Mockito.anyString());
+		verify(photoVariants, Mockito.never()).delete(Mockito.anyString());
+	}
+
+	@Test
+	void deleteWhenContentAddressedAndLastReferenceIsReleasedMustFlagTheBlobAndDeleteItTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		Path blob = Files.createFile(path.resolve("blob.jpg"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 0))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+						Mockito.any(FindAndModifyOptions.class), Mockito.eq(Document.class), Mockito.eq("fotos"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 0))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Document.class),
+						Mockito.eq("fotos"));
+		doReturn(Mono.just(DeleteResult.acknowledged(1))).when(mongoTemplate)
+				.remove(Mockito.any(Query.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.delete("blob.jpg"))
+			.expectNext(true)
+			.expectComplete()
+			.verify();
+
+		assertFalse(Files.exists(blob));
+		ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).findAndModify(claim.capture(), Mockito.any(Update.class), Mockito.eq(Document.class),
+				Mockito.eq("fotos"));
+		Document filter = claim.getValue().getQueryObject();
+		assertEquals(new Document("$lte", 0), filter.get("refs"));
+		assertEquals(new Document("$not", new Document("$gt", 0)), filter.get("pending"));
+		assertEquals(new Document("$ne", true), filter.get("deleting"));
+	}
+
+	@Test
+	void deleteWhenContentAddressedAndASaveHoldsAReservationMustLeaveTheBlobToItTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		Path blob = Files.createFile(path.resolve("blob.jpg"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 0))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+						Mockito.any(FindAndModifyOptions.class), Mockito.eq(Document.class), Mockito.eq("fotos"));
+		doReturn(Mono.empty()).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Document.class),
+						Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.delete("blob.jpg"))
+			.expectNext(false)
+			.expectComplete()
+			.verify();
+
+		assertTrue(Files.exists(blob));
+		verify(mongoTemplate, Mockito.never()).remove(Mockito.any(Query.class), Mockito.anyString());
+	}
+
+	@Test
+	void deleteWhenContentAddressedAndDeletingTheFileFailsMustClearTheFlagTest() throws Exception {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+		Files.createFile(path.resolve("blob.jpg"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 0))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+						Mockito.any(FindAndModifyOptions.class), Mockito.eq(Document.class), Mockito.eq("fotos"));
+		doReturn(Mono.just(new Document("_id", "blob.jpg").append("refs", 0))).when(mongoTemplate)
+				.findAndModify(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(Document.class),
+						Mockito.eq("fotos"));
+		doReturn(Mono.error(new IllegalStateException("broken"))).when(photoVariants).delete("blob.jpg");
+		doReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null))).when(mongoTemplate)
+				.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq("fotos"));
+
+		StepVerifier.create(photoStorage.delete("blob.jpg"))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		ArgumentCaptor<Update> clear = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateFirst(Mockito.any(Query.class), clear.capture(), Mockito.eq("fotos"));
+		assertEquals(new Document("deleting", 1), clear.getValue().getUpdateObject().get("$unset"));
+		verify(mongoTemplate, Mockito.never()).remove(Mockito.any(Query.class), Mockito.anyString());
+	}
+
+	@Test
+	void deleteWhenPhotoExistsMustDeleteFileAndReturnTrueTest() throws Exception {
+		Path photo = Files.createFile(path.resolve("photo.jpg"));
+
+		StepVerifier.create(photoStorage.delete("photo.jpg"))
+			.expectNext(true)
+			.expectComplete()
+			.verify();
+
+		assertFalse(Files.exists(photo));
+		verify(photoVariants).delete("photo.jpg");
+	}
+
+	@Test
+	void deleteWhenPhotoDoesNotExistMustReturnFalseTest() {
+
+		StepVerifier.create(photoStorage.delete("missing.jpg"))
+			.expectNext(false)
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void findWhenPhotoIsOutsideUploadsOrMissingMustReturnEmptyTest() throws Exception {
+		Path photo = Files.createFile(path.resolve("photo.jpg"));
+
+		Files.writeString(photo, "foobar");
+
+		StepVerifier.create(photoStorage.find("photo.jpg"))
+			.expectNextMatches(stored -> "photo.jpg".equals(stored.getName())
+					&& stored.getLength() == 6
+					&& stored.getFile() != null)
+			.expectComplete()
+			.verify();
+		StepVerifier.create(photoStorage.find("missing.jpg"))
+			.expectComplete()
+			.verify();
+		StepVerifier.create(photoStorage.find("../photo.jpg"))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void findVariantMustDescribeTheStoredVariantOrReturnEmptyWhenMissingTest() throws Exception {
+		Path variant = Files.createDirectories(path.resolve("variants/thumbnail")).resolve("photo.jpg");
+		Files.writeString(variant, "foo");
+		doReturn(variant).when(photoVariants).find("photo.jpg", PhotoSizeEnum.THUMBNAIL);
+
+		StepVerifier.create(photoStorage.findVariant("photo.jpg", PhotoSizeEnum.THUMBNAIL))
+			.expectNextMatches(stored -> "photo.jpg".equals(stored.getName()) && stored.getLength() == 3)
+			.expectComplete()
+			.verify();
+		StepVerifier.create(photoStorage.findVariant("photo.jpg", PhotoSizeEnum.MEDIUM))
+			.expectComplete()
+			.verify();
+	}
+
+	private Flux<DataBuffer> content(String... chunks) {
+		return Flux.just(chunks)
+				.map(chunk -> DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+	}
+}
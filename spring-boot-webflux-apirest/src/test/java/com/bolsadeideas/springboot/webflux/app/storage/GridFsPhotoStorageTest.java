@@ -0,0 +1,170 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsUpload;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.mongodb.client.gridfs.model.GridFSFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+public class GridFsPhotoStorageTest {
+
+	private GridFsPhotoStorage photoStorage;
+
+	private ReactiveGridFsTemplate gridFsTemplate;
+
+	private PhotoVariants photoVariants;
+
+	@BeforeEach
+	void init() {
+		photoStorage = new GridFsPhotoStorage();
+		gridFsTemplate = Mockito.mock(ReactiveGridFsTemplate.class);
+		photoVariants = Mockito.mock(PhotoVariants.class);
+		ReflectionTestUtils.setField(photoStorage, "gridFsTemplate", gridFsTemplate);
+		ReflectionTestUtils.setField(photoStorage, "photoVariants", photoVariants);
+		ReflectionTestUtils.setField(photoStorage, "chunkSize", DataSize.ofKilobytes(64));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void saveWhenContentIsStreamedMustStoreItUnderThePhotoNameWithTheConfiguredChunkSizeTest() {
+		Flux<DataBuffer> content = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("foo".getBytes(StandardCharsets.UTF_8)));
+		ArgumentCaptor<ReactiveGridFsUpload<ObjectId>> upload = ArgumentCaptor.forClass(ReactiveGridFsUpload.class);
+		doReturn(Mono.just(new ObjectId())).when(gridFsTemplate).store(upload.capture());
+		doReturn(Mono.empty()).when(photoVariants).encode(Mockito.anyString(), Mockito.<Flux<DataBuffer>>any());
+
+		StepVerifier.create(photoStorage.save("photo.jpg", content))
+			.expectNext("photo.jpg")
+			.expectComplete()
+			.verify();
+
+		assertEquals("photo.jpg", upload.getValue().getFilename());
+		assertEquals(64 * 1024, upload.getValue().getOptions().getChunkSize());
+		assertEquals(content, upload.getValue().getContent());
+		verify(photoVariants).encode(Mockito.eq("photo.jpg"), Mockito.<Flux<DataBuffer>>any());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void saveWhenVariantsAreEncodedMustStoreEachOneInGridFsReplacingThePreviousOneTest() {
+		Map<PhotoSizeEnum, byte[]> variants = new EnumMap<>(PhotoSizeEnum.class);
+		variants.put(PhotoSizeEnum.THUMBNAIL, "thumbnail".getBytes(StandardCharsets.UTF_8));
+		variants.put(PhotoSizeEnum.MEDIUM, "medium".getBytes(StandardCharsets.UTF_8));
+		ArgumentCaptor<ReactiveGridFsUpload<ObjectId>> upload = ArgumentCaptor.forClass(ReactiveGridFsUpload.class);
+		doReturn(Mono.just(new ObjectId())).when(gridFsTemplate).store(upload.capture());
+		doReturn(Mono.empty()).when(gridFsTemplate).delete(Mockito.any(Query.class));
+		doReturn(Mono.just(variants)).when(photoVariants).encode(Mockito.anyString(), Mockito.<Flux<DataBuffer>>any());
+
+		StepVerifier.create(photoStorage.saveVariants("photo.jpg"))
+			.expectComplete()
+			.verify();
+
+		assertEquals(Arrays.asList("variants/thumbnail/photo.jpg", "variants/medium/photo.jpg"), upload.getAllValues().stream()
+				.map(ReactiveGridFsUpload::getFilename)
+				.collect(Collectors.toList()));
+		StepVerifier.create(DataBufferUtils.join(upload.getAllValues().get(1).getContent())
+				.map(buffer -> buffer.toString(StandardCharsets.UTF_8)))
+			.expectNext("medium")
+			.expectComplete()
+			.verify();
+		verify(gridFsTemplate, Mockito.times(2)).delete(Mockito.any(Query.class));
+		verify(photoVariants, Mockito.never()).generate(Mockito.anyString(), Mockito.any());
+	}
+
+	@Test
+	void deleteWhenPhotoExistsMustDeleteItAndItsVariantsTest() {
+		doReturn(Mono.just(file("photo.jpg"))).when(gridFsTemplate).findFirst(Mockito.any(Query.class));
+		doReturn(Mono.empty()).when(gridFsTemplate).delete(Mockito.any(Query.class));
+
+		StepVerifier.create(photoStorage.delete("photo.jpg"))
+			.expectNext(true)
+			.expectComplete()
+			.verify();
+
+		ArgumentCaptor<Query> deleted = ArgumentCaptor.forClass(Query.class);
+		verify(gridFsTemplate, Mockito.times(2)).delete(deleted.capture());
+		assertEquals("photo.jpg", deleted.getAllValues().get(0).getQueryObject().get("filename"));
+		assertEquals(new Document("$in", Arrays.asList("variants/thumbnail/photo.jpg", "variants/medium/photo.jpg")),
+				deleted.getAllValues().get(1).getQueryObject().get("filename"));
+		verify(photoVariants, Mockito.never()).delete(Mockito.anyString());
+	}
+
+	@Test
+	void deleteWhenPhotoDoesNotExistMustReturnFalseTest() {
+		doReturn(Mono.empty()).when(gridFsTemplate).findFirst(Mockito.any(Query.class));
+
+		StepVerifier.create(photoStorage.delete("missing.jpg"))
+			.expectNext(false)
+			.expectComplete()
+			.verify();
+
+		verify(gridFsTemplate, Mockito.never()).delete(Mockito.any(Query.class));
+	}
+
+	@Test
+	void findWhenPhotoExistsMustDescribeItWithoutDownloadingTheContentTest() {
+		doReturn(Mono.just(file("photo.jpg"))).when(gridFsTemplate).findFirst(Mockito.any(Query.class));
+
+		StepVerifier.create(photoStorage.find("photo.jpg"))
+			.expectNextMatches(stored -> "photo.jpg".equals(stored.getName())
+					&& stored.getLength() == 6
+					&& stored.getLastModified() == 1000
+					&& stored.getFile() == null)
+			.expectComplete()
+			.verify();
+
+		verify(gridFsTemplate, Mockito.never()).getResource(Mockito.any(GridFSFile.class));
+	}
+
+	@Test
+	void findVariantWhenVariantIsStoredMustDescribeItUnderTheOriginalNameTest() {
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		doReturn(Mono.just(file("variants/thumbnail/photo.jpg"))).when(gridFsTemplate).findFirst(query.capture());
+
+		StepVerifier.create(photoStorage.findVariant("photo.jpg", PhotoSizeEnum.THUMBNAIL))
+			.expectNextMatches(stored -> "photo.jpg".equals(stored.getName()) && stored.getLength() == 6)
+			.expectComplete()
+			.verify();
+
+		assertEquals("variants/thumbnail/photo.jpg", query.getValue().getQueryObject().get("filename"));
+	}
+
+	@Test
+	void initWhenContentAddressedMustRejectTheConfigurationTest() {
+		ReflectionTestUtils.setField(photoStorage, "contentAddressed", true);
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, photoStorage::init);
+		assertTrue(exception.getMessage().contains("config.uploads.content-addressed"));
+	}
+
+	private GridFSFile file(String photo) {
+		return new GridFSFile(new BsonObjectId(new ObjectId()), photo, 6, 64 * 1024, new Date(1000), null);
+	}
+}
@@ -0,0 +1,273 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import com.mongodb.client.result.DeleteResult;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+
+public class UploadSessionsTest {
+
+	@TempDir
+	Path path;
+
+	private UploadSessions uploadSessions;
+
+	private ReactiveMongoTemplate mongoTemplate;
+
+	// Stands in for the sessions collection, the queries only use equality, $lt and $in and the updates only $set
+	private final Map<String, Document> sessions = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void init() {
+		mongoTemplate = Mockito.mock(ReactiveMongoTemplate.class);
+		doAnswer(invocation -> Mono.fromSupplier(() -> {
+			Document session = invocation.getArgument(0);
+			sessions.put(session.getString("_id"), session);
+			return session;
+		})).when(mongoTemplate).insert(Mockito.any(Document.class), Mockito.eq("subidas"));
+		doAnswer(invocation -> Mono.fromSupplier(() -> matching(invocation.getArgument(0)).findFirst()
+				.map(session -> {
+					session.putAll(((Update) invocation.getArgument(1)).getUpdateObject().get("$set", Document.class));
+					return new Document(session);
+				}).orElse(null)))
+				.when(mongoTemplate).findAndModify(Mockito.any(Query.class), Mockito.any(Update.class),
+						Mockito.any(FindAndModifyOptions.class), Mockito.eq(Document.class), Mockito.eq("subidas"));
+		doAnswer(invocation -> Mono.fromSupplier(() -> matching(invocation.getArgument(0)).findAny().isPresent()))
+				.when(mongoTemplate).exists(Mockito.any(Query.class), Mockito.eq("subidas"));
+		doAnswer(invocation -> Flux.defer(() -> Flux.fromIterable(matching(invocation.getArgument(0))
+				.map(Document::new).collect(Collectors.toList()))))
+				.when(mongoTemplate).find(Mockito.any(Query.class), Mockito.eq(Document.class), Mockito.eq("subidas"));
+		doAnswer(invocation -> Mono.fromSupplier(() -> DeleteResult.acknowledged(matching(invocation.getArgument(0))
+				.collect(Collectors.toList()).stream()
+				.filter(session -> sessions.remove(session.getString("_id"), session))
+				.count())))
+				.when(mongoTemplate).remove(Mockito.any(Query.class), Mockito.eq("subidas"));
+		uploadSessions = uploadSessions();
+	}
+
+	@Test
+	void appendWhenChunksArriveInOrderMustWriteThemAtTheirOffsetsTest() throws Exception {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+
+		StepVerifier.create(uploadSessions.append(session.getId(), 0, content("foo")))
+			.expectNextMatches(updated -> updated.getOffset() == 3 && !updated.isComplete())
+			.expectComplete()
+			.verify();
+		StepVerifier.create(uploadSessions.append(session.getId(), 3, content("b", "ar")))
+			.expectNextMatches(updated -> updated.getOffset() == 6 && updated.isComplete())
+			.expectComplete()
+			.verify();
+
+		assertArrayEquals("foobar".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(session.getFile()));
+	}
+
+	@Test
+	void appendWhenConnectionDropsMustKeepTheBytesReceivedSoTheClientCanResumeTest() throws Exception {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+
+		StepVerifier.create(uploadSessions.append(session.getId(), 0,
+				content("foo").concatWith(Mono.error(new IllegalStateException("conexion cerrada")))))
+			.expectError(IllegalStateException.class)
+			.verify();
+
+		assertEquals(3, uploadSessions.find(session.getId()).block().getOffset());
+		StepVerifier.create(uploadSessions.append(session.getId(), 3, content("bar")))
+			.expectNextMatches(UploadSession::isComplete)
+			.expectComplete()
+			.verify();
+		assertArrayEquals("foobar".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(session.getFile()));
+	}
+
+	@Test
+	void appendWhenOffsetDoesNotMatchMustFailWithConflictWithoutWritingTest() throws Exception {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+
+		StepVerifier.create(uploadSessions.append(session.getId(), 2, content("foo")))
+			.expectErrorMatches(error -> isStatus(error, HttpStatus.CONFLICT))
+			.verify();
+
+		assertEquals(0, Files.size(session.getFile()));
+		StepVerifier.create(uploadSessions.append(session.getId(), 0, content("foo")))
+			.expectNextMatches(updated -> updated.getOffset() == 3)
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void appendWhenAnotherRequestHoldsTheSessionMustFailWithConflictWithoutWritingTest() throws Exception {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+		sessions.get(session.getId()).put("lockedUntil", new Date(System.currentTimeMillis() + 60_000));
+
+		StepVerifier.create(uploadSessions.append(session.getId(), 0, content("foo")))
+			.expectErrorMatches(error -> isStatus(error, HttpStatus.CONFLICT))
+			.verify();
+
+		assertEquals(0, Files.size(session.getFile()));
+	}
+
+	@Test
+	void appendWhenTheSessionWasStartedByAnotherInstanceMustResumeAtItsStoredOffsetTest() throws Exception {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+		uploadSessions.append(session.getId(), 0, content("foo")).block();
+		UploadSessions otherInstance = uploadSessions();
+
+		assertEquals(3, otherInstance.find(session.getId()).block().getOffset());
+		StepVerifier.create(otherInstance.append(session.getId(), 3, content("bar")))
+			.expectNextMatches(UploadSession::isComplete)
+			.expectComplete()
+			.verify();
+		assertArrayEquals("foobar".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(session.getFile()));
+	}
+
+	@Test
+	void appendWhenChunkExceedsDeclaredLengthMustFailWithPayloadTooLargeTest() {
+		UploadSession session = uploadSessions.create("id", "foto.png", 4).block();
+
+		StepVerifier.create(uploadSessions.append(session.getId(), 0, content("foo", "bar")))
+			.expectErrorMatches(error -> isStatus(error, HttpStatus.PAYLOAD_TOO_LARGE))
+			.verify();
+
+		assertEquals(3, uploadSessions.find(session.getId()).block().getOffset());
+	}
+
+	@Test
+	void appendWhenSessionDoesNotExistMustReturnEmptyTest() {
+
+		StepVerifier.create(uploadSessions.append("desconocida", 0, content("foo")))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void createWhenLengthExceedsMaxFileSizeMustFailWithPayloadTooLargeTest() {
+
+		StepVerifier.create(uploadSessions.create("id", "foto.png", 11))
+			.expectErrorMatches(error -> isStatus(error, HttpStatus.PAYLOAD_TOO_LARGE))
+			.verify();
+	}
+
+	@Test
+	void completeWhenBytesAreMissingMustFailWithConflictAndKeepTheSessionTest() {
+		UploadSession session = uploadSessions.create("id", "foto.png", 6).block();
+
+		StepVerifier.create(uploadSessions.complete(session.getId(), completed -> Mono.just("producto")))
+			.expectErrorMatches(error -> isStatus(error, HttpStatus.CONFLICT))
+			.verify();
+
+		assertTrue(Files.exists(session.getFile()));
+		StepVerifier.create(uploadSessions.append(session.getId(), 0, content("foo")))
+			.expectNextMatches(updated -> updated.getOffset() == 3)
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void completeWhenAllBytesArrivedMustRunFinisherAndRemoveTheSessionTest() {
+		UploadSession session = uploadSessions.create("id", "foto.png", 3).block();
+		uploadSessions.append(session.getId(), 0, content("foo")).block();
+
+		StepVerifier.create(uploadSessions.complete(session.getId(), completed -> DataBufferUtils
+				.join(StoredPhoto.read(completed.getFile()))
+				.map(buffer -> buffer.toString(StandardCharsets.UTF_8))))
+			.expectNext("foo")
+			.expectComplete()
+			.verify();
+
+		assertFalse(Files.exists(session.getFile()));
+		assertFalse(sessions.containsKey(session.getId()));
+		StepVerifier.create(uploadSessions.find(session.getId()))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void expireWhenSessionIsIdleMustDeleteItAndOrphanedFilesTest() throws Exception {
+		UploadSession idle = uploadSessions.create("id", "foto.png", 6).block();
+		UploadSession active = uploadSessions.create("id", "foto.png", 6).block();
+		sessions.get(idle.getId()).put("lastAccess", new Date(0));
+		Path orphan = Files.createFile(path.resolve("sesiones").resolve("huerfano"));
+		Files.setLastModifiedTime(orphan, FileTime.fromMillis(0));
+
+		StepVerifier.create(uploadSessions.expire())
+			.expectNext(2L)
+			.expectComplete()
+			.verify();
+
+		assertFalse(Files.exists(idle.getFile()));
+		assertFalse(Files.exists(orphan));
+		assertTrue(Files.exists(active.getFile()));
+		assertEquals(Collections.singleton(active.getId()), sessions.keySet());
+	}
+
+	private UploadSessions uploadSessions() {
+		UploadValidator uploadValidator = new UploadValidator();
+		ReflectionTestUtils.setField(uploadValidator, "maxFileSize", DataSize.ofBytes(10));
+		UploadSessions uploadSessions = new UploadSessions();
+		ReflectionTestUtils.setField(uploadSessions, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(uploadSessions, "uploadValidator", uploadValidator);
+		ReflectionTestUtils.setField(uploadSessions, "path", path.resolve("sesiones").toString());
+		ReflectionTestUtils.setField(uploadSessions, "idleTimeout", Duration.ofMinutes(1));
+		return uploadSessions;
+	}
+
+	private Stream<Document> matching(Query query) {
+		return sessions.values().stream()
+				.filter(session -> query.getQueryObject().entrySet().stream()
+						.allMatch(criteria -> matches(session.get(criteria.getKey()), criteria.getValue())));
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean matches(Object value, Object criteria) {
+		if (!(criteria instanceof Document))
+			return criteria.equals(value);
+
+		Document operator = (Document) criteria;
+		if (operator.containsKey("$lt"))
+			return ((Comparable<Object>) value).compareTo(operator.get("$lt")) < 0;
+		return ((Collection<Object>) operator.get("$in")).contains(value);
+	}
+
+	private Flux<DataBuffer> content(String... chunks) {
+		return Flux.fromArray(chunks)
+				.map(chunk -> DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private boolean isStatus(Throwable error, HttpStatus status) {
+		return error instanceof ResponseStatusException && status.equals(((ResponseStatusException) error).getStatus());
+	}
+}
@@ -0,0 +1,124 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UploadValidatorTest {
+
+	private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13 };
+
+	private UploadValidator uploadValidator;
+
+	@BeforeEach
+	void init() {
+		uploadValidator = new UploadValidator();
+		ReflectionTestUtils.setField(uploadValidator, "maxFileSize", DataSize.ofBytes(20));
+		ReflectionTestUtils.setField(uploadValidator, "maxRequestSize", DataSize.ofBytes(30));
+	}
+
+	@Test
+	void validateWhenImageFitsTheLimitMustPassEveryBufferThroughTest() {
+
+		StepVerifier.create(uploadValidator.validate(Flux.just(buffer(new byte[] { (byte) 0x89, 'P', 'N' }),
+				buffer(PNG, 3, 9), buffer(new byte[5]))))
+			.expectNextCount(3)
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	void validateWhenFirstBytesAreNotAnImageMustFailWith415AndCancelTheRestTest() {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Flux<DataBuffer> content = Flux.concat(Flux.just(buffer("<html><body>".getBytes(StandardCharsets.US_ASCII))),
+				Flux.<DataBuffer>never())
+				.doOnCancel(() -> cancelled.set(true));
+
+		StepVerifier.create(uploadValidator.validate(content))
+			.expectErrorMatches(error -> error instanceof ResponseStatusException
+					&& HttpStatus.UNSUPPORTED_MEDIA_TYPE.equals(((ResponseStatusException) error).getStatus()))
+			.verify();
+
+		assertTrue(cancelled.get());
+	}
+
+	@Test
+	void validateWhenPhotoIsTooShortToBeAnImageMustFailWith415Test() {
+
+		StepVerifier.create(uploadValidator.validate(Flux.just(buffer("abc".getBytes(StandardCharsets.US_ASCII)))))
+			.expectNextCount(1)
+			.expectErrorMatches(error -> HttpStatus.UNSUPPORTED_MEDIA_TYPE.equals(((ResponseStatusException) error).getStatus()))
+			.verify();
+	}
+
+	@Test
+	void validateWhenPhotoCrossesTheLimitMustFailWith413AndCancelTheRestTest() {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Flux<DataBuffer> content = Flux.concat(Flux.just(buffer(PNG), buffer(new byte[12])), Flux.<DataBuffer>never())
+				.doOnCancel(() -> cancelled.set(true));
+
+		StepVerifier.create(uploadValidator.validate(content))
+			.expectNextCount(1)
+			.expectErrorMatches(error -> HttpStatus.PAYLOAD_TOO_LARGE.equals(((ResponseStatusException) error).getStatus()))
+			.verify();
+
+		assertTrue(cancelled.get());
+	}
+
+	@Test
+	void limitWhenContentLengthIsTooLargeMustFailBeforeReadingTheBodyTest() {
+		AtomicBoolean subscribed = new AtomicBoolean();
+		ServerHttpRequest request = MockServerHttpRequest.post("/api/v2/productos/crear")
+				.contentLength(31)
+				.body(Flux.just(buffer(new byte[31])).doOnSubscribe(subscription -> subscribed.set(true)));
+
+		StepVerifier.create(uploadValidator.limit(request).getBody())
+			.expectErrorMatches(error -> HttpStatus.PAYLOAD_TOO_LARGE.equals(((ResponseStatusException) error).getStatus()))
+			.verify();
+
+		assertFalse(subscribed.get());
+	}
+
+	@Test
+	void limitWhenBodyCrossesTheLimitWithoutContentLengthMustFailWith413Test() {
+		ServerHttpRequest request = MockServerHttpRequest.post("/api/v2/productos/crear")
+				.body(Flux.just(buffer(new byte[20]), buffer(new byte[20])));
+
+		StepVerifier.create(uploadValidator.limit(request).getBody())
+			.expectNextCount(1)
+			.expectErrorMatches(error -> HttpStatus.PAYLOAD_TOO_LARGE.equals(((ResponseStatusException) error).getStatus()))
+			.verify();
+	}
+
+	@Test
+	void isImageWhenHeadMatchesAKnownSignatureMustReturnTrueTest() {
+
+		assertTrue(uploadValidator.isImage(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0 }));
+		assertTrue(uploadValidator.isImage("GIF89a......".getBytes(StandardCharsets.US_ASCII)));
+		assertTrue(uploadValidator.isImage("RIFF....WEBP".getBytes(StandardCharsets.US_ASCII)));
+		assertFalse(uploadValidator.isImage("RIFF....WAVE".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	private DataBuffer buffer(byte[] bytes) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+	}
+
+	private DataBuffer buffer(byte[] bytes, int offset, int length) {
+		return DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, offset, offset + length));
+	}
+}
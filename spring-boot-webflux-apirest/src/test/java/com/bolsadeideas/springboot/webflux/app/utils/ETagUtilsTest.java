@@ -0,0 +1,78 @@
+package com.bolsadeideas.springboot.webflux.app.utils;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import com.bolsadeideas.springboot.webflux.app.constants.ProductFieldEnum;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.app.storage.StoredPhoto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ETagUtilsTest {
+
+	@Test
+	void ofWhenFieldsArePresentMustAppendThemToTheVersionTest() {
+		Product product = new Product();
+		product.setId("abc");
+		product.setVersion(4L);
+
+		assertEquals("\"abc-4\"", ETagUtils.of(product, Collections.emptySet()));
+		assertEquals("\"abc-4;name,price\"",
+				ETagUtils.of(product, EnumSet.of(ProductFieldEnum.PRICE, ProductFieldEnum.NAME)));
+	}
+
+	@Test
+	void ofWhenPhotoChangesMustChangeTheTagTest() {
+
+		assertEquals("\"a-100\"", ETagUtils.of(new StoredPhoto("photo.jpg", 10, 0x100, Flux.empty())));
+		assertEquals("\"a-200\"", ETagUtils.of(new StoredPhoto("photo.jpg", 10, 0x200, Flux.empty())));
+	}
+
+	@Test
+	void matchesWhenAnyTagMatchesWeaklyOrIsWildcardMustReturnTrueTest() {
+
+		assertTrue(ETagUtils.matches(List.of("\"x\", W/\"abc-4\""), "\"abc-4\""));
+		assertTrue(ETagUtils.matches(List.of("*"), "\"abc-4\""));
+		assertFalse(ETagUtils.matches(List.of("\"abc-3\""), "\"abc-4\""));
+		assertFalse(ETagUtils.matches(Collections.emptyList(), "\"abc-4\""));
+	}
+
+	@Test
+	void matchesWhenTagHasSeveralFieldsMustNotSplitItOnTheirCommasTest() {
+		Product product = new Product();
+		product.setId("abc");
+		product.setVersion(4L);
+		String eTag = ETagUtils.of(product, EnumSet.of(ProductFieldEnum.NAME, ProductFieldEnum.PRICE));
+
+		assertTrue(ETagUtils.matches(List.of(eTag), eTag));
+		assertTrue(ETagUtils.matches(List.of("\"x\", W/" + eTag), eTag));
+		assertFalse(ETagUtils.matches(List.of("\"abc-4;name\", \"price\""), eTag));
+		assertTrue(ETagUtils.matches(List.of("abc-4, " + eTag), eTag));
+	}
+
+	@Test
+	void parseVersionWhenTagBelongsToIdMustReturnVersionTest() {
+
+		assertEquals(4L, ETagUtils.parseVersion("\"abc-4\"", "abc"));
+		assertEquals(4L, ETagUtils.parseVersion("\"abc-4;name\"", "abc"));
+		assertNull(ETagUtils.parseVersion(null, "abc"));
+		assertNull(ETagUtils.parseVersion("*", "abc"));
+	}
+
+	@Test
+	void parseVersionWhenTagIsMalformedMustThrowIllegalArgumentExceptionTest() {
+
+		assertThrows(IllegalArgumentException.class, () -> ETagUtils.parseVersion("\"other-4\"", "abc"));
+		assertThrows(IllegalArgumentException.class, () -> ETagUtils.parseVersion("abc-4", "abc"));
+		assertThrows(IllegalArgumentException.class, () -> ETagUtils.parseVersion("\"abc-x\"", "abc"));
+		assertThrows(IllegalArgumentException.class, () -> ETagUtils.parseVersion("\"", "abc"));
+	}
+}
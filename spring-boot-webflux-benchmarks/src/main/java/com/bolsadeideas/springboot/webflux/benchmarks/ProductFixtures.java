@@ -0,0 +1,45 @@
+package com.bolsadeideas.springboot.webflux.benchmarks;
+
+import java.util.Date;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.client.app.models.Categoria;
+import com.bolsadeideas.springboot.webflux.client.app.models.Producto;
+
+final class ProductFixtures {
+
+	static final String NAME = "TV Panasonic Pantalla LCD";
+
+	static final String PHOTO = "tv panasonic: pantalla\\lcd.png";
+
+	private static final Date CREATE_AT = new Date(1640995200000L);
+
+	private ProductFixtures() {
+	}
+
+	static Product product() {
+		Category category = new Category("Electronico");
+		category.setId("61c0c8b5e1b2a44d7c3f0a01");
+		Product product = new Product(NAME, 456.89, category);
+		product.setId("61c0c8b5e1b2a44d7c3f0a02");
+		product.setCreateAt(CREATE_AT);
+		product.setPhoto("8f14e45f-ceea-467f-a8d4-1b2f5c3e9a10-tvpanasonic.png");
+		product.setVersion(3L);
+		return product;
+	}
+
+	static Producto producto() {
+		Categoria categoria = new Categoria();
+		categoria.setId("61c0c8b5e1b2a44d7c3f0a01");
+		categoria.setNombre("Electronico");
+		Producto producto = new Producto();
+		producto.setId("61c0c8b5e1b2a44d7c3f0a02");
+		producto.setNombre(NAME);
+		producto.setPrecio(456.89);
+		producto.setCreateAt(CREATE_AT);
+		producto.setFoto("8f14e45f-ceea-467f-a8d4-1b2f5c3e9a10-tvpanasonic.png");
+		producto.setCategoria(categoria);
+		return producto;
+	}
+}
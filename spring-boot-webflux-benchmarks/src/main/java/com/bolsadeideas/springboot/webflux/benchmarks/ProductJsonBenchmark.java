@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+import com.bolsadeideas.springboot.webflux.client.app.models.Producto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductJsonBenchmark {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private Product product;
+
+	private Producto producto;
+
+	private byte[] productJson;
+
+	private byte[] productoJson;
+
+	@Setup
+	public void setup() throws JsonProcessingException {
+		product = ProductFixtures.product();
+		producto = ProductFixtures.producto();
+		productJson = objectMapper.writeValueAsBytes(product);
+		productoJson = objectMapper.writeValueAsBytes(producto);
+	}
+
+	@Benchmark
+	public byte[] serializeProduct() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(product);
+	}
+
+	@Benchmark
+	public Product deserializeProduct() throws IOException {
+		return objectMapper.readValue(productJson, Product.class);
+	}
+
+	@Benchmark
+	public byte[] serializeProducto() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(producto);
+	}
+
+	@Benchmark
+	public Producto deserializeProducto() throws IOException {
+		return objectMapper.readValue(productoJson, Producto.class);
+	}
+}
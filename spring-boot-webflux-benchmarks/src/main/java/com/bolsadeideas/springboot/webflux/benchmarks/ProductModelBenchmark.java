@@ -0,0 +1,47 @@
+package com.bolsadeideas.springboot.webflux.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductModelBenchmark {
+
+	private Product product;
+
+	private String uuid;
+
+	@Setup
+	public void setup() {
+		product = ProductFixtures.product();
+		uuid = UUID.randomUUID().toString();
+	}
+
+	@Benchmark
+	public Product setPhotoWithFormattedName() {
+		product.setPhotoWithFormattedName(uuid, ProductFixtures.PHOTO);
+		return product;
+	}
+
+	@Benchmark
+	public Product setNameToUpperCase() {
+		product.setName(ProductFixtures.NAME);
+		return product.setNameToUpperCase();
+	}
+}
@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.blockhound;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.blockhound.BlockingOperationError;
+
+// Blocking calls are often turned into an error signal or a 500 response by the code under test, so they are
+// collected here and fail the test that caused them even when the test itself passed. Calls reported by background
+// work after its test finished are kept with the name of that test and fail the next test or the test class
+public class BlockingCallsExtension implements BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+
+	private static final Logger logger = LoggerFactory.getLogger(BlockingCallsExtension.class);
+
+	private static final Queue<ReportedCall> reported = new ConcurrentLinkedQueue<>();
+
+	private static volatile String currentTest = "ninguno";
+
+	private static volatile boolean running;
+
+	public static void report(BlockingOperationError error) {
+		String test = running ? currentTest : "despues de " + currentTest;
+		logger.error("Llamada bloqueante en el hilo " + Thread.currentThread().getName() + " (test " + test + ")", error);
+		reported.add(new ReportedCall(test, error));
+	}
+
+	@Override
+	public void beforeEach(ExtensionContext context) {
+		failOnReported("Llamadas bloqueantes reportadas fuera de un test");
+		currentTest = context.getRequiredTestClass().getSimpleName() + "." + context.getDisplayName();
+		running = true;
+	}
+
+	@Override
+	public void afterEach(ExtensionContext context) {
+		running = false;
+		failOnReported("Llamadas bloqueantes en hilos no bloqueantes");
+	}
+
+	@Override
+	public void afterAll(ExtensionContext context) {
+		failOnReported("Llamadas bloqueantes reportadas fuera de un test");
+	}
+
+	private void failOnReported(String message) {
+		List<ReportedCall> found = new ArrayList<>();
+		for (ReportedCall call = reported.poll(); call != null; call = reported.poll())
+			found.add(call);
+		if (found.isEmpty())
+			return;
+
+		AssertionError failure = new AssertionError(message + ": " + found.size() + ", la primera (test "
+				+ found.get(0).test() + "): " + found.get(0).error().getMessage(), found.get(0).error());
+		found.stream().skip(1).map(ReportedCall::error).forEach(failure::addSuppressed);
+		throw failure;
+	}
+
+	private record ReportedCall(String test, BlockingOperationError error) {
+	}
+}
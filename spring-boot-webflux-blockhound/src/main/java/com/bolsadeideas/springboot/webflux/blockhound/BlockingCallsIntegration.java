@@ -0,0 +1,51 @@
+package com.bolsadeideas.springboot.webflux.blockhound;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.blockhound.integration.BlockHoundIntegration;
+
+public class BlockingCallsIntegration implements BlockHoundIntegration {
+
+	public static final String ALLOW_LIST = "blockhound-allow-list.txt";
+
+	@Override
+	public void applyTo(BlockHound.Builder builder) {
+		readAllowList().forEach(entry -> builder.allowBlockingCallsInside(entry[0], entry[1]));
+		builder.blockingMethodCallback(method -> {
+			BlockingOperationError error = new BlockingOperationError(method);
+			BlockingCallsExtension.report(error);
+			throw error;
+		});
+	}
+
+	// One "class method" entry per line, lines starting with # are comments
+	protected List<String[]> readAllowList() {
+		InputStream input = BlockingCallsIntegration.class.getClassLoader().getResourceAsStream(ALLOW_LIST);
+		if (input == null)
+			return Collections.emptyList();
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+			return reader.lines()
+					.map(String::trim)
+					.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+					.map(line -> {
+						String[] entry = line.split("\\s+");
+						if (entry.length != 2)
+							throw new IllegalStateException("Entrada invalida en " + ALLOW_LIST + ": " + line);
+						return entry;
+					})
+					.collect(Collectors.toList());
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+}
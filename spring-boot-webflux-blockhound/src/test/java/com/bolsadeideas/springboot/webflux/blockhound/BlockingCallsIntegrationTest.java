@@ -0,0 +1,107 @@
+package com.bolsadeideas.springboot.webflux.blockhound;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+
+public class BlockingCallsIntegrationTest {
+
+	@TempDir
+	Path folder;
+
+	private BlockingCallsExtension extension;
+
+	private ExtensionContext context;
+
+	@BeforeAll
+	static void install() {
+		BlockHound.install();
+	}
+
+	@BeforeEach
+	void init() {
+		extension = new BlockingCallsExtension();
+		context = Mockito.mock(ExtensionContext.class);
+		doReturn(ProductControllerTest.class).when(context).getRequiredTestClass();
+		doReturn("saveTest()").when(context).getDisplayName();
+	}
+
+	@Test
+	public void afterEachWhenAFileIsWrittenOnANonBlockingThreadThenMustFailTheTestThatCausedItTest() {
+		File photo = new File(folder.toFile(), "foto.png");
+
+		extension.beforeEach(context);
+		// The error is swallowed like a controller that answers 500, the extension must fail the test anyway
+		StepVerifier.create(Mono.fromCallable(() -> write(photo)).subscribeOn(Schedulers.parallel())
+				.onErrorResume(BlockingOperationError.class, error -> Mono.just(false)))
+				.expectNext(false)
+				.verifyComplete();
+
+		AssertionError failure = assertThrows(AssertionError.class, () -> extension.afterEach(context));
+		assertTrue(failure.getMessage().startsWith("Llamadas bloqueantes en hilos no bloqueantes: 1, la primera "
+				+ "(test ProductControllerTest.saveTest()): Blocking call! java.io.FileOutputStream"),
+				failure.getMessage());
+		assertTrue(failure.getCause() instanceof BlockingOperationError);
+	}
+
+	@Test
+	public void afterEachWhenTheBlockingCallIsInsideAnAllowedMethodThenMustPassTest() {
+		File photo = new File(folder.toFile(), "foto.png");
+
+		extension.beforeEach(context);
+		StepVerifier.create(Mono.fromCallable(() -> writeAllowed(photo)).subscribeOn(Schedulers.parallel()))
+				.expectNext(true)
+				.verifyComplete();
+
+		extension.afterEach(context);
+		assertEquals(1L, photo.length());
+	}
+
+	@Test
+	public void beforeEachWhenABlockingCallIsReportedAfterTheTestFinishedThenMustFailTheNextTestTest() {
+		File photo = new File(folder.toFile(), "foto.png");
+
+		extension.beforeEach(context);
+		extension.afterEach(context);
+		StepVerifier.create(Mono.fromCallable(() -> write(photo)).subscribeOn(Schedulers.parallel()))
+				.expectError(BlockingOperationError.class)
+				.verify();
+
+		AssertionError failure = assertThrows(AssertionError.class, () -> extension.beforeEach(context));
+		assertTrue(failure.getMessage().startsWith("Llamadas bloqueantes reportadas fuera de un test: 1, la primera "
+				+ "(test despues de ProductControllerTest.saveTest())"), failure.getMessage());
+	}
+
+	// Listed in the blockhound-allow-list.txt of the tests
+	private boolean writeAllowed(File photo) throws IOException {
+		return write(photo);
+	}
+
+	private boolean write(File photo) throws IOException {
+		try (FileOutputStream output = new FileOutputStream(photo)) {
+			output.write(1);
+		}
+		return true;
+	}
+
+	// Stands for the test class that made the blocking call
+	private static class ProductControllerTest {
+	}
+}
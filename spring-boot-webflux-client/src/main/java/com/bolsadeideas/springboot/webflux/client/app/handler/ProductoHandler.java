@@ -1,6 +1,7 @@
 package com.bolsadeideas.springboot.webflux.client.app.handler;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
@@ -67,9 +68,10 @@ public class ProductoHandler {
 	public Mono<ServerResponse> editar(ServerRequest request) {
 		Mono<Producto> producto = request.bodyToMono(Producto.class);
 		String id = request.pathVariable("id");
+		String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
 		
 		return errorHandler(producto
-					.flatMap(product -> service.update(product, id))
+					.flatMap(product -> service.update(product, id, ifMatch))
 					.flatMap(product -> ServerResponse
 					.created(URI.create("/api/client/".concat(id)))
 					.contentType(MediaType.APPLICATION_JSON)
@@ -106,6 +108,11 @@ public class ProductoHandler {
 				body.put("status", errorResponse.getStatusCode().value());
 				return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(body);
 			}
+			if (errorResponse.getStatusCode() == HttpStatus.PRECONDITION_REQUIRED
+					|| errorResponse.getStatusCode() == HttpStatus.PRECONDITION_FAILED) {
+				return ServerResponse.status(errorResponse.getStatusCode())
+						.bodyValue(errorResponse.getResponseBodyAsString());
+			}
 			return Mono.error(errorResponse);
 		});
 	}
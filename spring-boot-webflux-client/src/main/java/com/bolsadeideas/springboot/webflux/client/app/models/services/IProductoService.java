@@ -15,7 +15,7 @@ public interface IProductoService {
 	
 	public Mono<Producto> save(Producto producto);
 	
-	public Mono<Producto> update(Producto producto, String id);
+	public Mono<Producto> update(Producto producto, String id, String ifMatch);
 	
 	public Mono<Void> delete(String id);
 	
@@ -52,9 +52,14 @@ public class ProductoServiceImpl implements IProductoService {
 	}
 
 	@Override
-	public Mono<Producto> update(Producto producto, String id) {
+	public Mono<Producto> update(Producto producto, String id, String ifMatch) {
 		return client.build().put()
 				.uri("/{id}", Collections.singletonMap("id", id))
+				.headers(headers -> {
+					if (ifMatch != null) {
+						headers.setIfMatch(ifMatch);
+					}
+				})
 				.contentType(APPLICATION_JSON)
 				.accept(APPLICATION_JSON)
 				.bodyValue(producto)
@@ -0,0 +1,68 @@
+package com.bolsadeideas.springboot.webflux.images;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+public class ImageUtils {
+
+	private ImageUtils() {
+	}
+
+	// The reader gets the dimensions from the image header, so an image too large to decode is rejected before
+	// its pixels are allocated
+	public static BufferedImage read(Object source, long maxPixels) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+			Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+			if (!readers.hasNext())
+				return null;
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if ((long) width * height > maxPixels)
+					throw new IOException("la imagen de " + width + "x" + height + " supera el maximo de " + maxPixels
+							+ " pixeles");
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	public static BufferedImage scale(BufferedImage image, int maxDimension, String format) {
+		double ratio = Math.min(1d, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+		int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+		BufferedImage scaled = new BufferedImage(width, height,
+				"jpg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = scaled.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		graphics.drawImage(image, 0, 0, width, height, null);
+		graphics.dispose();
+		return scaled;
+	}
+
+	public static String format(String photo) {
+		String extension = photo.substring(photo.lastIndexOf('.') + 1).toLowerCase();
+		switch (extension) {
+			case "jpg":
+			case "jpeg":
+				return "jpg";
+			case "png":
+			case "gif":
+			case "bmp":
+				return extension;
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.bolsadeideas.springboot.webflux.images;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ImageUtilsTest {
+
+	@Test
+	public void readWhenImageFitsMaxPixelsThenMustDecodeItTest() throws Exception {
+		BufferedImage image = ImageUtils.read(new ByteArrayInputStream(png(100, 50)), 5_000L);
+
+		assertEquals(100, image.getWidth());
+		assertEquals(50, image.getHeight());
+	}
+
+	@Test
+	public void readWhenImageExceedsMaxPixelsThenMustFailBeforeDecodingTest() throws Exception {
+		IOException exception = assertThrows(IOException.class,
+				() -> ImageUtils.read(new ByteArrayInputStream(png(1001, 1000)), 1_000_000L));
+
+		assertEquals("la imagen de 1001x1000 supera el maximo de 1000000 pixeles", exception.getMessage());
+	}
+
+	@Test
+	public void readWhenSourceIsNotAnImageThenMustReturnNullTest() throws Exception {
+		assertNull(ImageUtils.read(new ByteArrayInputStream("not an image".getBytes(StandardCharsets.UTF_8)), 1_000L));
+	}
+
+	@Test
+	public void scaleWhenImageIsLargerThanMaxDimensionThenMustKeepAspectRatioWithoutUpscalingTest() {
+		BufferedImage image = new BufferedImage(1280, 640, BufferedImage.TYPE_INT_RGB);
+
+		BufferedImage scaled = ImageUtils.scale(image, 160, "jpg");
+
+		assertEquals(160, scaled.getWidth());
+		assertEquals(80, scaled.getHeight());
+		assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+		assertEquals(1280, ImageUtils.scale(image, 2000, "png").getWidth());
+	}
+
+	@Test
+	public void formatWhenExtensionIsSupportedThenMustReturnTheImageIoFormatTest() {
+		assertEquals("jpg", ImageUtils.format("uuid-photo.JPEG"));
+		assertEquals("png", ImageUtils.format("uuid-photo.png"));
+		assertNull(ImageUtils.format("uuid-photo.txt"));
+	}
+
+	private byte[] png(int width, int height) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+		return output.toByteArray();
+	}
+}
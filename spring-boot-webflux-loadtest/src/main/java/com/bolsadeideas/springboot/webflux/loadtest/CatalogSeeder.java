@@ -0,0 +1,56 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
+import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
+
+public class CatalogSeeder {
+
+	private static final int BATCH_SIZE = 500;
+
+	private static final Duration POLL_INTERVAL = Duration.ofMillis(250);
+
+	private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+	private final ReactiveMongoTemplate mongoTemplate;
+
+	public CatalogSeeder(ReactiveMongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	public Mono<List<String>> seed(int products) {
+		return awaitStartupCatalog()
+				.then(mongoTemplate.findAll(Category.class).collectList())
+				.flatMapMany(categories -> Flux.range(0, products)
+						.map(index -> product(index, categories.get(index % categories.size()))))
+				.buffer(BATCH_SIZE)
+				.concatMap(mongoTemplate::insertAll)
+				.map(Product::getId)
+				.collectList();
+	}
+
+	// The service drops and repopulates its demo catalogue asynchronously on startup
+	protected Mono<Void> awaitStartupCatalog() {
+		return Flux.interval(POLL_INTERVAL)
+				.concatMap(tick -> mongoTemplate.count(new Query(), Product.class))
+				.buffer(2, 1)
+				.filter(counts -> counts.size() == 2 && counts.get(0) > 0 && counts.get(0).equals(counts.get(1)))
+				.next()
+				.timeout(STARTUP_TIMEOUT)
+				.then();
+	}
+
+	private Product product(int index, Category category) {
+		Product product = new Product(String.format("Producto de carga %05d", index), 10 + (index % 1000) * 1.5,
+				category);
+		product.setCreateAt(new Date());
+		return product;
+	}
+}
@@ -0,0 +1,45 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.io.IOException;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class EmbeddedMongo implements AutoCloseable {
+
+	private final MongodExecutable executable;
+
+	private final MongodProcess process;
+
+	private final int port;
+
+	private EmbeddedMongo(MongodExecutable executable, MongodProcess process, int port) {
+		this.executable = executable;
+		this.process = process;
+		this.port = port;
+	}
+
+	public static EmbeddedMongo start() throws IOException {
+		int port = Network.getFreeServerPort();
+		MongodExecutable executable = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+				.version(Version.Main.V4_0)
+				.net(new Net(port, Network.localhostIsIPv6()))
+				.build());
+		return new EmbeddedMongo(executable, executable.start(), port);
+	}
+
+	public String getUri(String database) {
+		return "mongodb://localhost:" + port + "/" + database;
+	}
+
+	@Override
+	public void close() {
+		process.stop();
+		executable.stop();
+	}
+}
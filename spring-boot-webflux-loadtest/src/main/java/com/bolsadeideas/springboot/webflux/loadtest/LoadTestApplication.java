@@ -0,0 +1,99 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import com.bolsadeideas.springboot.webflux.app.SpringBootWebfluxApirestApplication;
+import com.bolsadeideas.springboot.webflux.loadtest.constants.TargetRouteEnum;
+
+public class LoadTestApplication {
+
+	private static final String DATABASE = "loadtest";
+
+	private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+
+	private static final Duration SEED_TIMEOUT = Duration.ofMinutes(5);
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadTestApplication.class);
+
+	public static void main(String[] args) throws Exception {
+		LoadTestOptions options = LoadTestOptions.from(args);
+		EmbeddedMongo mongo = options.getMongoUri() == null ? EmbeddedMongo.start() : null;
+		try (ConfigurableApplicationContext context = startService(mongo == null ? options.getMongoUri()
+				: mongo.getUri(DATABASE))) {
+			List<String> productIds = new CatalogSeeder(context.getBean(ReactiveMongoTemplate.class))
+					.seed(options.getProducts())
+					.block(SEED_TIMEOUT);
+			logger.info("Productos sembrados: " + productIds.size());
+
+			int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+			Path report = run(options, port, productIds);
+			logger.info("Resultados guardados en " + report.toAbsolutePath());
+		} finally {
+			if (mongo != null)
+				mongo.close();
+		}
+	}
+
+	private static ConfigurableApplicationContext startService(String mongoUri) {
+		// Command line arguments so they take precedence over the service's application.properties
+		return new SpringApplicationBuilder(SpringBootWebfluxApirestApplication.class)
+				.run("--server.port=0",
+						"--spring.data.mongodb.uri=" + mongoUri,
+						"--spring.autoconfigure.exclude=" + EmbeddedMongoAutoConfiguration.class.getName(),
+						"--eureka.client.enabled=false",
+						"--logging.level.com.bolsadeideas.springboot.webflux.app=WARN");
+	}
+
+	private static Path run(LoadTestOptions options, int port, List<String> productIds) throws Exception {
+		// The load generator gets its own event loops so it does not share them with the server under test
+		LoopResources loops = LoopResources.create("loadtest");
+		ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+				.maxConnections(options.getConnections())
+				.pendingAcquireMaxCount(-1)
+				.build();
+		Scheduler arrivals = Schedulers.newSingle("loadtest-arrivals");
+		try {
+			WebClient webClient = WebClient.builder()
+					.baseUrl("http://localhost:" + port)
+					.clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+							.runOn(loops)
+							.responseTimeout(RESPONSE_TIMEOUT)))
+					.build();
+			OpenModelLoad load = new OpenModelLoad(webClient, arrivals, productIds);
+
+			Instant startedAt = Instant.now();
+			List<RouteResult> results = new ArrayList<>();
+			for (TargetRouteEnum route : options.getRoutes()) {
+				load.run(route, options.getRate(), options.getWarmup()).block();
+				RouteResult result = load.run(route, options.getRate(), options.getDuration()).block();
+				logger.info(String.format("%-8s %8.1f req/s  errores %6.2f%%  p50 %s us  p90 %s us  p99 %s us  p99.9 %s us",
+						result.getRoute(), result.getThroughput(), result.getErrorRate() * 100,
+						result.getLatencyMicros().get("p50"), result.getLatencyMicros().get("p90"),
+						result.getLatencyMicros().get("p99"), result.getLatencyMicros().get("p99.9")));
+				results.add(result);
+			}
+			return new LoadTestReport(startedAt, options, results).write(options.getOutput());
+		} finally {
+			arrivals.dispose();
+			connections.disposeLater().block();
+			loops.disposeLater().block();
+		}
+	}
+}
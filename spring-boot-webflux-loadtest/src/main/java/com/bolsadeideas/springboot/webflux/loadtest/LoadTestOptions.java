@@ -0,0 +1,96 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import com.bolsadeideas.springboot.webflux.loadtest.constants.TargetRouteEnum;
+
+public class LoadTestOptions {
+
+	private final int rate;
+
+	private final Duration duration;
+
+	private final Duration warmup;
+
+	private final int products;
+
+	private final int connections;
+
+	private final List<TargetRouteEnum> routes;
+
+	private final Path output;
+
+	private final String mongoUri;
+
+	public LoadTestOptions(int rate, Duration duration, Duration warmup, int products, int connections,
+			List<TargetRouteEnum> routes, Path output, String mongoUri) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("rate must be positive");
+		this.rate = rate;
+		this.duration = duration;
+		this.warmup = warmup;
+		this.products = products;
+		this.connections = connections;
+		this.routes = routes;
+		this.output = output;
+		this.mongoUri = mongoUri;
+	}
+
+	public static LoadTestOptions from(String... args) {
+		SimpleCommandLinePropertySource source = new SimpleCommandLinePropertySource(args);
+		String routes = source.getProperty("routes");
+		return new LoadTestOptions(Integer.parseInt(get(source, "rate", "200")),
+				DurationStyle.detectAndParse(get(source, "duration", "30s")),
+				DurationStyle.detectAndParse(get(source, "warmup", "10s")),
+				Integer.parseInt(get(source, "products", "1000")),
+				Integer.parseInt(get(source, "connections", "500")),
+				routes == null ? Arrays.asList(TargetRouteEnum.values())
+						: Arrays.stream(routes.split(",")).map(TargetRouteEnum::fromName).collect(Collectors.toList()),
+				Paths.get(get(source, "output", "target/loadtest")),
+				source.getProperty("mongo-uri"));
+	}
+
+	public int getRate() {
+		return rate;
+	}
+
+	public Duration getDuration() {
+		return duration;
+	}
+
+	public Duration getWarmup() {
+		return warmup;
+	}
+
+	public int getProducts() {
+		return products;
+	}
+
+	public int getConnections() {
+		return connections;
+	}
+
+	public List<TargetRouteEnum> getRoutes() {
+		return routes;
+	}
+
+	public Path getOutput() {
+		return output;
+	}
+
+	public String getMongoUri() {
+		return mongoUri;
+	}
+
+	private static String get(SimpleCommandLinePropertySource source, String name, String defaultValue) {
+		String value = source.getProperty(name);
+		return value == null ? defaultValue : value;
+	}
+}
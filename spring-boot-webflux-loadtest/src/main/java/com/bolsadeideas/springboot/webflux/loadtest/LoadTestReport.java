@@ -0,0 +1,70 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.bolsadeideas.springboot.webflux.loadtest.constants.TargetRouteEnum;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class LoadTestReport {
+
+	private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("'loadtest-'yyyyMMdd-HHmmss'.json'")
+			.withZone(ZoneOffset.UTC);
+
+	private final Instant startedAt;
+
+	private final LoadTestOptions options;
+
+	private final List<RouteResult> results;
+
+	public LoadTestReport(Instant startedAt, LoadTestOptions options, List<RouteResult> results) {
+		this.startedAt = startedAt;
+		this.options = options;
+		this.results = results;
+	}
+
+	public String getStartedAt() {
+		return startedAt.toString();
+	}
+
+	public int getRate() {
+		return options.getRate();
+	}
+
+	public String getDuration() {
+		return options.getDuration().toString();
+	}
+
+	public String getWarmup() {
+		return options.getWarmup().toString();
+	}
+
+	public int getProducts() {
+		return options.getProducts();
+	}
+
+	public List<String> getRoutes() {
+		return options.getRoutes().stream().map(TargetRouteEnum::getName).collect(Collectors.toList());
+	}
+
+	public boolean isEmbeddedMongo() {
+		return options.getMongoUri() == null;
+	}
+
+	public List<RouteResult> getResults() {
+		return results;
+	}
+
+	public Path write(Path directory) throws IOException {
+		Path file = Files.createDirectories(directory).resolve(FILE_NAME.format(startedAt));
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+		return file;
+	}
+}
@@ -0,0 +1,67 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import com.bolsadeideas.springboot.webflux.loadtest.constants.TargetRouteEnum;
+
+public class OpenModelLoad {
+
+	private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+	private final WebClient webClient;
+
+	private final Scheduler arrivals;
+
+	private final List<String> productIds;
+
+	public OpenModelLoad(WebClient webClient, Scheduler arrivals, List<String> productIds) {
+		this.webClient = webClient;
+		this.arrivals = arrivals;
+		this.productIds = productIds;
+	}
+
+	// Requests are issued at a fixed arrival rate whatever the response times are, and latency is measured
+	// from the intended send time so a stalled server is not hidden by coordinated omission
+	public Mono<RouteResult> run(TargetRouteEnum route, int rate, Duration duration) {
+		long period = TimeUnit.SECONDS.toNanos(1) / rate;
+		long requests = duration.toMillis() * rate / 1000;
+		return Mono.defer(() -> {
+			Histogram histogram = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+			AtomicLong errors = new AtomicLong();
+			long start = System.nanoTime();
+			return Flux.interval(Duration.ZERO, Duration.ofNanos(period), arrivals)
+					.take(requests)
+					.flatMap(index -> send(route, start + index * period, histogram, errors), Integer.MAX_VALUE)
+					.then(Mono.fromCallable(() -> new RouteResult(route.getName(), requests, errors.get(),
+							System.nanoTime() - start, histogram)));
+		});
+	}
+
+	private Mono<Void> send(TargetRouteEnum route, long intendedStart, Histogram histogram, AtomicLong errors) {
+		return webClient.get()
+				.uri(route.getUri(), productIds.get(ThreadLocalRandom.current().nextInt(productIds.size())))
+				.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().isError()))
+				.doOnNext(failed -> {
+					if (failed)
+						errors.incrementAndGet();
+					else
+						histogram.recordValue(Math.min(HIGHEST_LATENCY_MICROS,
+								TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart)));
+				})
+				.onErrorResume(error -> {
+					errors.incrementAndGet();
+					return Mono.empty();
+				})
+				.then();
+	}
+}
@@ -0,0 +1,68 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+public class RouteResult {
+
+	private final String route;
+
+	private final long requests;
+
+	private final long errors;
+
+	private final long elapsedNanos;
+
+	private final Histogram histogram;
+
+	public RouteResult(String route, long requests, long errors, long elapsedNanos, Histogram histogram) {
+		this.route = route;
+		this.requests = requests;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.histogram = histogram;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public double getErrorRate() {
+		return requests == 0 ? 0 : (double) errors / requests;
+	}
+
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : (requests - errors) / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	public Map<String, Object> getLatencyMicros() {
+		Map<String, Object> latency = new LinkedHashMap<>();
+		latency.put("mean", histogram.getMean());
+		latency.put("p50", histogram.getValueAtPercentile(50));
+		latency.put("p90", histogram.getValueAtPercentile(90));
+		latency.put("p99", histogram.getValueAtPercentile(99));
+		latency.put("p99.9", histogram.getValueAtPercentile(99.9));
+		latency.put("max", histogram.getMaxValue());
+		return latency;
+	}
+
+	// Compressed HdrHistogram so later runs can be merged or re-plotted
+	public String getHistogram() {
+		ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+		int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+		return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+	}
+}
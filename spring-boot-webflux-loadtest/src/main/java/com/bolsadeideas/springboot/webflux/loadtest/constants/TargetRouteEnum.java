@@ -0,0 +1,35 @@
+package com.bolsadeideas.springboot.webflux.loadtest.constants;
+
+import java.util.Arrays;
+
+public enum TargetRouteEnum {
+
+    V1_LIST("v1-list", "/api/productos?limit=20"),
+    V1_VIEW("v1-view", "/api/productos/{id}"),
+    V2_LIST("v2-list", "/api/v2/productos?limit=20"),
+    V2_VIEW("v2-view", "/api/v2/productos/{id}");
+
+    private final String name;
+
+    private final String uri;
+
+    TargetRouteEnum(String name, String uri) {
+        this.name = name;
+        this.uri = uri;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public static TargetRouteEnum fromName(String name) {
+        return Arrays.stream(values())
+                .filter(route -> route.name.equals(name.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown route: " + name));
+    }
+}
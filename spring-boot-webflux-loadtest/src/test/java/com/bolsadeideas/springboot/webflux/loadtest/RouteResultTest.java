@@ -0,0 +1,40 @@
+package com.bolsadeideas.springboot.webflux.loadtest;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RouteResultTest {
+
+	@Test
+	void resultMustReportThroughputErrorRateAndPercentilesOfSuccessfulRequestsTest() {
+		Histogram histogram = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+		for (long latency = 1; latency <= 1000; latency++)
+			histogram.recordValue(latency);
+
+		RouteResult result = new RouteResult("v1-view", 1010, 10, TimeUnit.SECONDS.toNanos(2), histogram);
+
+		assertEquals(500.0, result.getThroughput(), 0.001);
+		assertEquals(0.0099, result.getErrorRate(), 0.0001);
+		assertEquals(500L, result.getLatencyMicros().get("p50"));
+		assertEquals(990L, result.getLatencyMicros().get("p99"));
+		assertEquals(1000L, result.getLatencyMicros().get("max"));
+	}
+
+	@Test
+	void histogramMustRoundTripThroughItsCompressedEncodingTest() throws Exception {
+		Histogram histogram = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+		histogram.recordValue(1234);
+		histogram.recordValue(5678);
+
+		RouteResult result = new RouteResult("v2-list", 2, 0, TimeUnit.SECONDS.toNanos(1), histogram);
+		Histogram decoded = Histogram.decodeFromCompressedByteBuffer(
+				ByteBuffer.wrap(Base64.getDecoder().decode(result.getHistogram())), 0);
+
+		assertEquals(histogram, decoded);
+	}
+}
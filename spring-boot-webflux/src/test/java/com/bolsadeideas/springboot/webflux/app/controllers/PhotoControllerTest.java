@@ -0,0 +1,142 @@
+package com.bolsadeideas.springboot.webflux.app.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.config.DelegatingWebFluxConfiguration;
+import reactor.test.StepVerifier;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoVariants;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhotoControllerTest {
+
+	@TempDir
+	Path path;
+
+	private AnnotationConfigApplicationContext context;
+
+	private PhotoController photoController;
+
+	private WebTestClient client;
+
+	@BeforeEach
+	void init() throws Exception {
+		context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("uploads", Map.of(
+				"config.uploads.path", path.toString(),
+				"config.uploads.variants.threads", 1,
+				"config.uploads.variants.queue", 1,
+				"config.uploads.variants.max-pixels", 1_000_000L)));
+		context.register(DelegatingWebFluxConfiguration.class, PhotoVariants.class, PhotoController.class);
+		context.refresh();
+		photoController = context.getBean(PhotoController.class);
+		client = WebTestClient.bindToApplicationContext(context).build();
+		Files.writeString(path.resolve("uuid-photo.png"), "0123456789", StandardCharsets.UTF_8);
+	}
+
+	@AfterEach
+	void close() {
+		context.close();
+	}
+
+	@Test
+	public void viewPhotoWhenPhotoExistsThenMustReturnImmutableCacheHeadersAndValidatorsTest() {
+
+		StepVerifier.create(photoController.viewPhoto("uuid-photo.png", null))
+			.expectNextMatches(response -> HttpStatus.OK.equals(response.getStatusCode())
+					&& response.getHeaders().getCacheControl().contains("immutable")
+					&& response.getHeaders().getCacheControl().contains("max-age=31536000")
+					&& response.getHeaders().getETag() != null
+					&& response.getHeaders().getLastModified() > 0
+					&& response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION) == null)
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void viewPhotoWhenPhotoDoesNotExistOrEscapesUploadsThenMustReturnNotFoundTest() {
+
+		StepVerifier.create(photoController.viewPhoto("missing.png", null))
+			.expectNextMatches(response -> HttpStatus.NOT_FOUND.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+
+		StepVerifier.create(photoController.viewPhoto("..", null))
+			.expectNextMatches(response -> HttpStatus.NOT_FOUND.equals(response.getStatusCode()))
+			.expectComplete()
+			.verify();
+	}
+
+	@Test
+	public void viewPhotoWhenRangeIsRequestedThenMustReturnPartialContentTest() {
+
+		client.get().uri("/uploads/img/uuid-photo.png")
+			.header(HttpHeaders.RANGE, "bytes=2-5")
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+			.expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+			.expectHeader().contentType(MediaType.IMAGE_PNG)
+			.expectBody(String.class).isEqualTo("2345");
+	}
+
+	@Test
+	public void viewPhotoWhenETagMatchesThenMustReturnNotModifiedWithoutBodyTest() {
+		String eTag = client.get().uri("/uploads/img/uuid-photo.png")
+			.exchange()
+			.expectStatus().isOk()
+			.returnResult(String.class)
+			.getResponseHeaders()
+			.getETag();
+
+		client.get().uri("/uploads/img/uuid-photo.png")
+			.header(HttpHeaders.IF_NONE_MATCH, eTag)
+			.exchange()
+			.expectStatus().isNotModified()
+			.expectBody().isEmpty();
+
+		assertTrue(eTag.startsWith("\""));
+		assertEquals(eTag, photoController.eTag(path.resolve("uuid-photo.png")));
+	}
+
+	@Test
+	public void viewPhotoWhenVariantExistsThenMustReturnVariantWithImmutableCacheTest() throws Exception {
+		Path thumbnail = path.resolve("variants").resolve(PhotoSizeEnum.THUMBNAIL.getSize());
+		Files.createDirectories(thumbnail);
+		Files.writeString(thumbnail.resolve("uuid-photo.png"), "0123", StandardCharsets.UTF_8);
+
+		client.get().uri("/uploads/img/uuid-photo.png?size=thumbnail")
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable")
+			.expectBody(String.class).isEqualTo("0123");
+	}
+
+	@Test
+	public void viewPhotoWhenVariantIsMissingThenMustFallBackToOriginalWithoutImmutableCacheTest() {
+
+		client.get().uri("/uploads/img/uuid-photo.png?size=medium")
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache, public")
+			.expectBody(String.class).isEqualTo("0123456789");
+
+		client.get().uri("/uploads/img/uuid-photo.png?size=huge")
+			.exchange()
+			.expectStatus().isBadRequest();
+	}
+}
@@ -1,8 +1,6 @@
 package com.bolsadeideas.springboot.webflux.app.controllers;
 
 import java.io.File;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
 import java.util.Date;
 import org.assertj.core.util.DateUtil;
 import org.junit.Assert;
@@ -15,9 +13,6 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.springframework.context.annotation.ComponentScan;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -30,10 +25,10 @@ import reactor.test.StepVerifier;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Category;
 import com.bolsadeideas.springboot.webflux.app.models.documents.Product;
 import com.bolsadeideas.springboot.webflux.app.models.services.IProductService;
+import com.bolsadeideas.springboot.webflux.app.storage.PhotoVariants;
 
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 
 @ComponentScan(basePackages = "com.bolsadeideas.springboot.webflux.app.controllers")
@@ -44,6 +39,8 @@ public class ProductControllerTest {
 	private ProductController productController;
 	@Mock
 	private IProductService service;
+	@Mock
+	private PhotoVariants photoVariants;
 
 	@BeforeEach
 	void init() {
@@ -94,50 +91,6 @@ public class ProductControllerTest {
 		verify(service).findAllCategories();
 	}
 
-	@Test
-	public void viewPhotoWhenResourceThrowAnExceptionThenMustReturnMalformedURLExceptionTest() throws MalformedURLException {
-		Path path = Mockito.mock(Path.class);
-		String photoName = "bce26c12-553e-4b20-a593-6dbc9d8dfdd2-SonyCamaraHDDigital";
-		doReturn(path).when(productController).getPath();
-		doReturn(path).when(path).resolve(photoName);
-		doReturn(path).when(path).toAbsolutePath();
-		doThrow(new MalformedURLException()).when(productController).getResource(path);
-		
-		Assertions.assertThrows(
-				MalformedURLException.class,
-	           () -> productController.viewPhoto(photoName)
-	    );
-
-		verify(productController).getPath();
-		verify(path).resolve(photoName);
-		verify(path).toAbsolutePath();
-		verify(productController).getResource(path);
-	}
-
-	@Test
-	public void viewPhotoWhenResourceIsValidThenMustReturnResponseEntityOKWithImageInBodyTest() throws MalformedURLException {
-		Path path = Mockito.mock(Path.class);
-		String photoName = "bce26c12-553e-4b20-a593-6dbc9d8dfdd2-SonyCamaraHDDigital";
-		Resource image = Mockito.mock(Resource.class);
-		ResponseEntity<Resource> resourceExpected = ResponseEntity.ok()
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + image.getFilename() + "\"")
-				.body(image);
-		doReturn(path).when(productController).getPath();
-		doReturn(path).when(path).resolve(photoName);
-		doReturn(path).when(path).toAbsolutePath();
-		doReturn(image).when(productController).getResource(path);
-		
-		StepVerifier.create(productController.viewPhoto(photoName))
-			.expectNext(resourceExpected)
-			.expectComplete()
-			.verify();
-
-		verify(productController).getPath();
-		verify(path).resolve(photoName);
-		verify(path).toAbsolutePath();
-		verify(productController).getResource(path);
-	}
-
 	@Test
 	public void viewWhenFindProductByIdThenMustSetProductAndTitleAndReturnMonoStringTest() {
 		Product product = new Product();
@@ -452,6 +405,7 @@ public class ProductControllerTest {
 		verify(service).save(product);
 		verify(file).transferTo(Mockito.any(File.class));
 		verify(productController).getUploadPath();
+		verify(photoVariants).generate(product.getPhoto());
 	}
 
 	@Test
@@ -614,16 +568,4 @@ public class ProductControllerTest {
 			.verify();
 		
 	}
-
-	@Test
-	public void getResourceWhenPathToUriHasErrorThenMustReturnAnExceptionTest() {
-		Path route = Mockito.mock(Path.class);
-		
-		Assertions.assertThrows(
-				IllegalArgumentException.class,
-				() -> productController.getResource(route)
-		);
-		
-		verify(route).toUri();
-	}
 }
@@ -0,0 +1,107 @@
+package com.bolsadeideas.springboot.webflux.app.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.bolsadeideas.springboot.webflux.app.constants.PhotoSizeEnum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PhotoVariantsTest {
+
+	@TempDir
+	Path path;
+
+	private PhotoVariants photoVariants;
+
+	@BeforeEach
+	void init() {
+		photoVariants = new PhotoVariants();
+		ReflectionTestUtils.setField(photoVariants, "path", path.toString());
+		ReflectionTestUtils.setField(photoVariants, "threads", 1);
+		ReflectionTestUtils.setField(photoVariants, "queue", 1);
+		ReflectionTestUtils.setField(photoVariants, "maxPixels", 1_000_000L);
+		photoVariants.init();
+	}
+
+	@AfterEach
+	void dispose() {
+		photoVariants.dispose();
+	}
+
+	@Test
+	public void resizeWhenPhotoIsAnImageThenMustWriteEveryVariantKeepingAspectRatioTest() throws Exception {
+		ImageIO.write(new BufferedImage(1280, 640, BufferedImage.TYPE_INT_RGB), "jpg", path.resolve("uuid-photo.jpg").toFile());
+
+		photoVariants.resize("uuid-photo.jpg");
+
+		BufferedImage thumbnail = ImageIO.read(photoVariants.find("uuid-photo.jpg", PhotoSizeEnum.THUMBNAIL).toFile());
+		BufferedImage medium = ImageIO.read(photoVariants.find("uuid-photo.jpg", PhotoSizeEnum.MEDIUM).toFile());
+		assertEquals(160, thumbnail.getWidth());
+		assertEquals(80, thumbnail.getHeight());
+		assertEquals(640, medium.getWidth());
+		assertEquals(320, medium.getHeight());
+	}
+
+	@Test
+	public void resizeWhenImageIsSmallerThanVariantThenMustNotUpscaleTest() throws Exception {
+		ImageIO.write(new BufferedImage(100, 50, BufferedImage.TYPE_INT_ARGB), "png", path.resolve("uuid-photo.png").toFile());
+
+		photoVariants.resize("uuid-photo.png");
+
+		assertEquals(100, ImageIO.read(photoVariants.find("uuid-photo.png", PhotoSizeEnum.MEDIUM).toFile()).getWidth());
+	}
+
+	@Test
+	public void resizeWhenImageExceedsMaxPixelsThenMustFailBeforeDecodingWithoutVariantsTest() throws Exception {
+		ImageIO.write(new BufferedImage(1001, 1000, BufferedImage.TYPE_INT_RGB), "png", path.resolve("uuid-photo.png").toFile());
+
+		IOException exception = assertThrows(IOException.class, () -> photoVariants.resize("uuid-photo.png"));
+
+		assertEquals("la imagen de 1001x1000 supera el maximo de 1000000 pixeles", exception.getMessage());
+		assertNull(photoVariants.find("uuid-photo.png", PhotoSizeEnum.THUMBNAIL));
+	}
+
+	@Test
+	public void resizeWhenPhotoIsNotAnImageThenMustFailWithoutVariantsTest() throws Exception {
+		Files.writeString(path.resolve("uuid-photo.png"), "not an image", StandardCharsets.UTF_8);
+		Files.writeString(path.resolve("uuid-photo.txt"), "not an image", StandardCharsets.UTF_8);
+
+		assertThrows(IOException.class, () -> photoVariants.resize("uuid-photo.png"));
+		assertThrows(IOException.class, () -> photoVariants.resize("uuid-photo.txt"));
+		assertNull(photoVariants.find("uuid-photo.png", PhotoSizeEnum.THUMBNAIL));
+	}
+
+	@Test
+	public void generateWhenPhotoIsUploadedThenMustWriteVariantsOffTheCallerThreadTest() throws Exception {
+		ImageIO.write(new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB), "png", path.resolve("uuid-photo.png").toFile());
+
+		photoVariants.generate("uuid-photo.png");
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (photoVariants.find("uuid-photo.png", PhotoSizeEnum.MEDIUM) == null && System.nanoTime() < deadline)
+			Thread.sleep(20);
+		assertNotNull(photoVariants.find("uuid-photo.png", PhotoSizeEnum.THUMBNAIL));
+		assertNotNull(photoVariants.find("uuid-photo.png", PhotoSizeEnum.MEDIUM));
+	}
+
+	@Test
+	public void findWhenPhotoEscapesVariantsDirectoryThenMustReturnNullTest() throws Exception {
+		Files.writeString(path.resolve("uuid-photo.png"), "0123", StandardCharsets.UTF_8);
+
+		assertNull(photoVariants.find("../../uuid-photo.png", PhotoSizeEnum.THUMBNAIL));
+	}
+}